@@ -15,6 +15,9 @@ public class InvalidXMLFileFormatException extends Exception
     
     // NAME OF XML SCHEMA USED FOR VALIDATION
     private String xsdFile;
+    
+    // WHAT VALIDATION FOUND, IF WE KNOW
+    private ValidationResult validationResult;
 
     /**
      * Constructor for this exception, these are simple objects,
@@ -32,6 +35,18 @@ public class InvalidXMLFileFormatException extends Exception
         xsdFile = initXSDFile;
     }
     
+    /**
+     * Constructor for when we know exactly what validation found.
+     * 
+     * @param initValidationResult The result of validating the xml file,
+     * with the problems found in it.
+     */
+    public InvalidXMLFileFormatException(   ValidationResult initValidationResult)
+    {
+        this(initValidationResult.getXMLFile(), initValidationResult.getXSDFile());
+        validationResult = initValidationResult;
+    }
+    
     /**
      * Constructor that records which xml file produced the error, but
      * not the schema.
@@ -43,6 +58,18 @@ public class InvalidXMLFileFormatException extends Exception
         xmlFileWithError = initXMLFileWithError;
     }
 
+    /**
+     * Accessor method for what validation found, with the location,
+     * message, and severity of each problem.
+     * 
+     * @return The validation result, or null if the file failed for
+     * some other reason, like not being laid out as expected.
+     */
+    public ValidationResult getValidationResult()
+    {
+        return validationResult;
+    }
+
     /**
      * This method builds and returns a textual description of this
      * object, which basically summarizes what went wrong.
@@ -53,7 +80,14 @@ public class InvalidXMLFileFormatException extends Exception
     @Override
     public String toString()
     {
-        return "XML Document (" + xmlFileWithError 
+        String description = "XML Document (" + xmlFileWithError 
                 + ") does not conform to Schema (" + xsdFile + ")";
+        
+        // SAY WHERE IT WENT WRONG IF WE KNOW
+        if ((validationResult != null) && (validationResult.getFirstError() != null))
+        {
+            description += ", " + validationResult.getFirstError();
+        }
+        return description;
     }
 }
\ No newline at end of file
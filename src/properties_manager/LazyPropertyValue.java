@@ -0,0 +1,137 @@
+package properties_manager;
+
+/**
+ * LazyPropertyValue.java
+ *
+ * This class holds the value of a property loaded in lazy mode, which
+ * is just where the value attribute's bytes are in an array holding the
+ * values of all the properties loaded from the same XML file. The value
+ * isn't turned into a String until the first time someone asks for it,
+ * after which the String is kept. It also knows the file and line it was
+ * loaded from, see PropertySource.
+ *
+ * @author THE McKilla Gorilla (accept no imposters)
+ * @version 2.0
+ */
+final class LazyPropertyValue {
+    // THE BYTES OF ALL THE VALUES FROM THE FILE, THEY SHARE THIS ARRAY
+    private final byte[] source;
+
+    // WHERE IN source THE VALUE ATTRIBUTE'S TEXT IS, NOT INCLUDING QUOTES
+    private final int offset;
+    private final int length;
+
+    // THE DECODED VALUE, null UNTIL IT'S FIRST NEEDED
+    private volatile String value;
+
+    // WHERE THE PROPERTY WAS LOADED FROM, THE NAME IS SHARED BY ALL THE
+    // VALUES FROM THE SAME FILE
+    private final String fileName;
+    private final int lineNumber;
+
+    /**
+     * Constructor for a value found in the source bytes.
+     *
+     * @param initSource The bytes the value is in.
+     *
+     * @param initOffset Where the value starts in the bytes.
+     *
+     * @param initLength How many bytes the value takes up.
+     *
+     * @param initFileName The file the property was loaded from.
+     *
+     * @param initLineNumber The line of the file the property is on.
+     */
+    LazyPropertyValue(byte[] initSource, int initOffset, int initLength, String initFileName, int initLineNumber) {
+        source = initSource;
+        offset = initOffset;
+        length = initLength;
+        fileName = initFileName;
+        lineNumber = initLineNumber;
+    }
+
+    /**
+     * Accessor method for the value, decoding it if this is the first
+     * time it is needed. Note that if two threads ask at the same time it
+     * may be decoded twice, but they will both get equal Strings.
+     *
+     * @return The value of the property.
+     */
+    String getValue() {
+        String decodedValue = value;
+        if (decodedValue == null) {
+            decodedValue = PropertiesFileScanner.decodeAttributeValue(source, offset, length);
+            value = decodedValue;
+        }
+        return decodedValue;
+    }
+
+    /**
+     * Accessor method for the value that doesn't keep the decoded String,
+     * for when every value is going to be read once, like when saving.
+     *
+     * @return The value of the property.
+     */
+    String peekValue() {
+        String decodedValue = value;
+        if (decodedValue == null) {
+            decodedValue = PropertiesFileScanner.decodeAttributeValue(source, offset, length);
+        }
+        return decodedValue;
+    }
+
+    /**
+     * This method tests to see if the value might have a reference to
+     * another property in it, without decoding it. Since a $ could have
+     * been written as a character reference, any & counts as well.
+     *
+     * @return false if the value has no references, true if it might.
+     */
+    boolean mayHaveReferences() {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (source[i] == '$' || source[i] == '&') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * This method tests to see if the other value was loaded from the same
+     * line of the same file and has the same bytes, like when a file is
+     * loaded again without changing, without decoding either of them.
+     *
+     * @param other The value to compare to.
+     *
+     * @return true if both are the same value from the same place.
+     */
+    boolean isReloadOf(LazyPropertyValue other) {
+        if (length != other.length || lineNumber != other.lineNumber || !fileName.equals(other.fileName)) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (source[offset + i] != other.source[other.offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Accessor method for where the property was loaded from.
+     *
+     * @return The file and line the property was found on.
+     */
+    PropertySource getSource() {
+        return new PropertySource(fileName, lineNumber);
+    }
+
+    /**
+     * Accessor method for testing to see if the value has been decoded.
+     *
+     * @return true if the value String has been made, false otherwise.
+     */
+    boolean isDecoded() {
+        return value != null;
+    }
+}
@@ -0,0 +1,433 @@
+package properties_manager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import static properties_manager.PropertiesManager.NAME_ATT;
+import static properties_manager.PropertiesManager.PROPERTIES_SCHEMA_FILE_NAME;
+import static properties_manager.PropertiesManager.PROPERTY_ELEMENT;
+import static properties_manager.PropertiesManager.PROPERTY_LIST_ELEMENT;
+import static properties_manager.PropertiesManager.PROPERTY_OPTIONS_ELEMENT;
+import static properties_manager.PropertiesManager.PROPERTY_OPTIONS_LIST_ELEMENT;
+import static properties_manager.PropertiesManager.VALUE_ATT;
+
+/**
+ * PropertiesAccessorGenerator.java
+ *
+ * This class is run at build time to turn a properties XML file into
+ * a Java class with a field for each property and options list in it.
+ * Instead of looking up properties by name, which can't catch spelling
+ * mistakes until the program runs, code can then read the fields of the
+ * generated class, which are filled in once from the properties manager.
+ * Each property's field is given the type its value has in the XML file,
+ * so a value of 42 makes an int field and a value of true a boolean one.
+ * Values that would read back differently, like 007, get String fields.
+ *
+ * It is run from the command line (the build.xml generate-accessors
+ * target does this) like so:
+ *
+ * java properties_manager.PropertiesAccessorGenerator xmlFile className outputDir
+ *
+ * where className is the fully qualified name of the class to make and
+ * outputDir is the root directory to put its source file in.
+ *
+ * @author THE McKilla Gorilla (accept no imposters)
+ * @version 2.0
+ */
+public class PropertiesAccessorGenerator {
+    // THESE CAN'T BE USED AS FIELD NAMES, THE LAST FEW BECAUSE THE
+    // GENERATED CODE USES THEM FOR ITS OWN MEMBERS AND PARAMETERS
+    private static final HashSet<String> JAVA_KEYWORDS = new HashSet<>(Arrays.asList(
+        "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char",
+        "class", "const", "continue", "default", "do", "double", "else", "enum",
+        "extends", "false", "final", "finally", "float", "for", "goto", "if",
+        "implements", "import", "instanceof", "int", "interface", "long", "native",
+        "new", "null", "package", "private", "protected", "public", "return",
+        "short", "static", "strictfp", "super", "switch", "synchronized", "this",
+        "throw", "throws", "transient", "true", "try", "void", "volatile", "while",
+        "values", "optionsLists", "snapshot", "PROPERTY_NAMES", "OPTIONS_LIST_NAMES",
+        "NUM_PROPERTIES", "NUM_OPTIONS_LISTS"));
+
+    // NAMES OF THINGS IN THE GENERATED CODE
+    public static final String PROPERTY_SLOT_PREFIX = "PROPERTY_";
+    public static final String OPTIONS_SLOT_PREFIX  = "OPTIONS_";
+    private static final String INDENT = "    ";
+
+    // THE PROPERTIES AND OPTIONS LISTS FOUND IN THE FILE, IN ORDER
+    private LinkedHashMap<String, String> properties;
+    private ArrayList<String> optionsListNames;
+
+    /**
+     * This runs the generator from the command line or build script.
+     *
+     * @param args The XML file, fully qualified class name, and root
+     * source directory to generate into.
+     */
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            System.err.println("Usage: PropertiesAccessorGenerator xmlFile className outputDir");
+            System.exit(1);
+        }
+        try {
+            PropertiesAccessorGenerator generator = new PropertiesAccessorGenerator();
+            generator.loadPropertyNames(args[0]);
+            File sourceFile = generator.generate(args[1], new File(args[2]), new File(args[0]).getName());
+            System.out.println("Generated " + sourceFile);
+        }
+        catch (InvalidXMLFileFormatException ixffe) {
+            System.err.println(ixffe);
+            System.exit(1);
+        }
+        catch (IOException ioe) {
+            System.err.println("Could not write accessor class: " + ioe.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Default constructor, nothing is generated until a file is loaded.
+     */
+    public PropertiesAccessorGenerator() {
+        properties = new LinkedHashMap<>();
+        optionsListNames = new ArrayList<>();
+    }
+
+    /**
+     * This method reads the names of all the properties and options lists
+     * in the xmlFile, along with the values of the properties, which are
+     * used to decide what types to give their fields.
+     *
+     * @param xmlFile Path and name of the properties XML file.
+     *
+     * @throws InvalidXMLFileFormatException Thrown if the file doesn't
+     * validate against properties_schema.xsd.
+     */
+    public void loadPropertyNames(String xmlFile) throws InvalidXMLFileFormatException {
+        XMLUtilities xmlUtil = new XMLUtilities();
+        String xmlSchemaFile = getClass().getResource(PROPERTIES_SCHEMA_FILE_NAME).getPath();
+        Document doc = xmlUtil.loadXMLDocument(xmlFile, xmlSchemaFile);
+        Node propertyListNode = xmlUtil.getNodeWithName(doc, PROPERTY_LIST_ELEMENT);
+        for (Node n : xmlUtil.getChildNodesWithName(propertyListNode, PROPERTY_ELEMENT)) {
+            String name = n.getAttributes().getNamedItem(NAME_ATT).getTextContent();
+            properties.put(name, n.getAttributes().getNamedItem(VALUE_ATT).getTextContent());
+        }
+        Node propertyOptionsListNode = xmlUtil.getNodeWithName(doc, PROPERTY_OPTIONS_LIST_ELEMENT);
+        if (propertyOptionsListNode != null) {
+            for (Node n : xmlUtil.getChildNodesWithName(propertyOptionsListNode, PROPERTY_OPTIONS_ELEMENT)) {
+                String name = n.getAttributes().getNamedItem(NAME_ATT).getNodeValue();
+                if (!optionsListNames.contains(name)) {
+                    optionsListNames.add(name);
+                }
+            }
+        }
+    }
+
+    /**
+     * This method writes the source code of the accessor class for the
+     * loaded file.
+     *
+     * @param className Fully qualified name of the class to generate.
+     *
+     * @param outputDir Root directory of the source tree to generate into,
+     * package directories will be made under it as needed.
+     *
+     * @param xmlFileName Name of the file the class is for, which will be
+     * mentioned in its comments.
+     *
+     * @return The source file that was written.
+     *
+     * @throws IOException Thrown if the file can't be written.
+     */
+    public File generate(String className, File outputDir, String xmlFileName) throws IOException {
+        int lastDot = className.lastIndexOf('.');
+        String packageName = lastDot < 0 ? null : className.substring(0, lastDot);
+        String simpleName = className.substring(lastDot + 1);
+        File packageDir = packageName == null ? outputDir : new File(outputDir, packageName.replace('.', File.separatorChar));
+        Files.createDirectories(packageDir.toPath());
+        File sourceFile = new File(packageDir, simpleName + ".java");
+
+        // WORK OUT ALL THE NAMES WE'LL USE FIRST SO THEY'RE ALL UNIQUE
+        HashSet<String> usedNames = new HashSet<>(JAVA_KEYWORDS);
+        ArrayList<String> propertySlots = new ArrayList<>();
+        ArrayList<String> propertyFields = new ArrayList<>();
+        ArrayList<String> propertyTypes = new ArrayList<>();
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            propertySlots.add(makeUnique(PROPERTY_SLOT_PREFIX + toIdentifier(entry.getKey()).toUpperCase(), usedNames));
+            propertyFields.add(makeUnique(toFieldName(entry.getKey()), usedNames));
+            propertyTypes.add(inferType(entry.getValue()));
+        }
+        ArrayList<String> optionsSlots = new ArrayList<>();
+        ArrayList<String> optionsFields = new ArrayList<>();
+        for (String name : optionsListNames) {
+            optionsSlots.add(makeUnique(OPTIONS_SLOT_PREFIX + toIdentifier(name).toUpperCase(), usedNames));
+            optionsFields.add(makeUnique(toFieldName(name), usedNames));
+        }
+        ArrayList<String> propertyNames = new ArrayList<>(properties.keySet());
+
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(sourceFile.toPath(), StandardCharsets.UTF_8))) {
+            if (packageName != null) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("import properties_manager.PropertiesManager;");
+            out.println("import properties_manager.PropertiesSnapshot;");
+            out.println("import properties_manager.PropertyOptionsList;");
+            out.println();
+            out.println("/**");
+            out.println(" * " + simpleName + ".java");
+            out.println(" * ");
+            out.println(" * THIS FILE WAS GENERATED FROM " + xmlFileName.replace('\\', '/').replace("*/", "*") + " BY");
+            out.println(" * PropertiesAccessorGenerator, SO DON'T EDIT IT, REGENERATE IT INSTEAD.");
+            out.println(" * ");
+            out.println(" * Each property and options list gets a slot index constant and a");
+            out.println(" * field holding its value, converted to the type its value had in");
+            out.println(" * the XML file. The values are all read from one snapshot when an");
+            out.println(" * object of this class is constructed.");
+            out.println(" */");
+            out.println("public final class " + simpleName + " {");
+
+            // THE SLOT CONSTANTS
+            out.println(INDENT + "// SLOT INDICES FOR THE PROPERTIES");
+            for (int i = 0; i < propertySlots.size(); i++) {
+                out.println(INDENT + "public static final int " + propertySlots.get(i) + " = " + i + ";");
+            }
+            out.println(INDENT + "public static final int NUM_PROPERTIES = " + propertySlots.size() + ";");
+            out.println();
+            out.println(INDENT + "// SLOT INDICES FOR THE OPTIONS LISTS");
+            for (int i = 0; i < optionsSlots.size(); i++) {
+                out.println(INDENT + "public static final int " + optionsSlots.get(i) + " = " + i + ";");
+            }
+            out.println(INDENT + "public static final int NUM_OPTIONS_LISTS = " + optionsSlots.size() + ";");
+            out.println();
+            out.println(INDENT + "// THE KEYS USED IN THE PROPERTIES MANAGER, BY SLOT");
+            out.println(INDENT + "private static final String[] PROPERTY_NAMES = {" + toStringLiterals(propertyNames) + "};");
+            out.println(INDENT + "private static final String[] OPTIONS_LIST_NAMES = {" + toStringLiterals(optionsListNames) + "};");
+            out.println();
+
+            // THE FIELDS
+            out.println(INDENT + "// ALL THE VALUES, BY SLOT");
+            out.println(INDENT + "private final String[] values;");
+            out.println(INDENT + "private final PropertyOptionsList[] optionsLists;");
+            out.println();
+            out.println(INDENT + "// AND AS TYPED FIELDS");
+            for (int i = 0; i < propertyFields.size(); i++) {
+                out.println(INDENT + "public final " + propertyTypes.get(i) + " " + propertyFields.get(i) + ";");
+            }
+            for (int i = 0; i < optionsFields.size(); i++) {
+                out.println(INDENT + "public final PropertyOptionsList " + optionsFields.get(i) + ";");
+            }
+            out.println();
+
+            // THE CONSTRUCTOR
+            out.println(INDENT + "/**");
+            out.println(INDENT + " * Constructor that reads every property and options list from the");
+            out.println(INDENT + " * snapshot, which must have all of them.");
+            out.println(INDENT + " * ");
+            out.println(INDENT + " * @param snapshot The properties to read.");
+            out.println(INDENT + " * ");
+            out.println(INDENT + " * @throws IllegalStateException Thrown if something is missing.");
+            out.println(INDENT + " * ");
+            out.println(INDENT + " * @throws NumberFormatException Thrown if a value for a number field");
+            out.println(INDENT + " * isn't a number.");
+            out.println(INDENT + " */");
+            out.println(INDENT + "public " + simpleName + "(PropertiesSnapshot snapshot) {");
+            out.println(INDENT + INDENT + "values = new String[NUM_PROPERTIES];");
+            out.println(INDENT + INDENT + "for (int i = 0; i < NUM_PROPERTIES; i++) {");
+            out.println(INDENT + INDENT + INDENT + "values[i] = snapshot.getProperty(PROPERTY_NAMES[i]);");
+            out.println(INDENT + INDENT + INDENT + "if (values[i] == null) {");
+            out.println(INDENT + INDENT + INDENT + INDENT + "throw new IllegalStateException(\"Missing property: \" + PROPERTY_NAMES[i]);");
+            out.println(INDENT + INDENT + INDENT + "}");
+            out.println(INDENT + INDENT + "}");
+            out.println(INDENT + INDENT + "optionsLists = new PropertyOptionsList[NUM_OPTIONS_LISTS];");
+            out.println(INDENT + INDENT + "for (int i = 0; i < NUM_OPTIONS_LISTS; i++) {");
+            out.println(INDENT + INDENT + INDENT + "optionsLists[i] = snapshot.getPropertyOptionsView(OPTIONS_LIST_NAMES[i]);");
+            out.println(INDENT + INDENT + INDENT + "if (optionsLists[i] == null) {");
+            out.println(INDENT + INDENT + INDENT + INDENT + "throw new IllegalStateException(\"Missing options list: \" + OPTIONS_LIST_NAMES[i]);");
+            out.println(INDENT + INDENT + INDENT + "}");
+            out.println(INDENT + INDENT + "}");
+            for (int i = 0; i < propertyFields.size(); i++) {
+                out.println(INDENT + INDENT + propertyFields.get(i) + " = "
+                        + toParseExpression(propertyTypes.get(i), "values[" + propertySlots.get(i) + "]") + ";");
+            }
+            for (int i = 0; i < optionsFields.size(); i++) {
+                out.println(INDENT + INDENT + optionsFields.get(i) + " = optionsLists[" + optionsSlots.get(i) + "];");
+            }
+            out.println(INDENT + "}");
+            out.println();
+
+            // AND THE ACCESSORS
+            out.println(INDENT + "/**");
+            out.println(INDENT + " * This method reads everything from a snapshot of the properties manager.");
+            out.println(INDENT + " * ");
+            out.println(INDENT + " * @param props The properties manager to read from.");
+            out.println(INDENT + " * ");
+            out.println(INDENT + " * @return An object holding all the values.");
+            out.println(INDENT + " */");
+            out.println(INDENT + "public static " + simpleName + " load(PropertiesManager props) {");
+            out.println(INDENT + INDENT + "PropertiesSnapshot snapshot = props.getSnapshot();");
+            out.println(INDENT + INDENT + "try {");
+            out.println(INDENT + INDENT + INDENT + "return new " + simpleName + "(snapshot);");
+            out.println(INDENT + INDENT + "}");
+            out.println(INDENT + INDENT + "finally {");
+            out.println(INDENT + INDENT + INDENT + "snapshot.release();");
+            out.println(INDENT + INDENT + "}");
+            out.println(INDENT + "}");
+            out.println();
+            out.println(INDENT + "/**");
+            out.println(INDENT + " * Accessor method for a property's value as text.");
+            out.println(INDENT + " * ");
+            out.println(INDENT + " * @param propertySlot One of the " + PROPERTY_SLOT_PREFIX + " constants.");
+            out.println(INDENT + " * ");
+            out.println(INDENT + " * @return The value of the property.");
+            out.println(INDENT + " */");
+            out.println(INDENT + "public String get(int propertySlot) {");
+            out.println(INDENT + INDENT + "return values[propertySlot];");
+            out.println(INDENT + "}");
+            out.println();
+            out.println(INDENT + "/**");
+            out.println(INDENT + " * Accessor method for an options list.");
+            out.println(INDENT + " * ");
+            out.println(INDENT + " * @param optionsSlot One of the " + OPTIONS_SLOT_PREFIX + " constants.");
+            out.println(INDENT + " * ");
+            out.println(INDENT + " * @return The options list.");
+            out.println(INDENT + " */");
+            out.println(INDENT + "public PropertyOptionsList getOptions(int optionsSlot) {");
+            out.println(INDENT + INDENT + "return optionsLists[optionsSlot];");
+            out.println(INDENT + "}");
+            out.println();
+            out.println(INDENT + "/**");
+            out.println(INDENT + " * Accessor method for the key of the property in a slot.");
+            out.println(INDENT + " * ");
+            out.println(INDENT + " * @param propertySlot One of the " + PROPERTY_SLOT_PREFIX + " constants.");
+            out.println(INDENT + " * ");
+            out.println(INDENT + " * @return The name of the property in the properties manager.");
+            out.println(INDENT + " */");
+            out.println(INDENT + "public static String getPropertyName(int propertySlot) {");
+            out.println(INDENT + INDENT + "return PROPERTY_NAMES[propertySlot];");
+            out.println(INDENT + "}");
+            out.println();
+            out.println(INDENT + "/**");
+            out.println(INDENT + " * Accessor method for the key of the options list in a slot.");
+            out.println(INDENT + " * ");
+            out.println(INDENT + " * @param optionsSlot One of the " + OPTIONS_SLOT_PREFIX + " constants.");
+            out.println(INDENT + " * ");
+            out.println(INDENT + " * @return The name of the options list in the properties manager.");
+            out.println(INDENT + " */");
+            out.println(INDENT + "public static String getOptionsListName(int optionsSlot) {");
+            out.println(INDENT + INDENT + "return OPTIONS_LIST_NAMES[optionsSlot];");
+            out.println(INDENT + "}");
+            out.println("}");
+        }
+        return sourceFile;
+    }
+
+    // WORKS OUT THE TYPE OF FIELD TO MAKE FOR A VALUE. A TYPE IS ONLY USED
+    // IF TURNING THE VALUE INTO ONE AND BACK GIVES THE SAME TEXT, SO A
+    // VALUE LIKE 007 OR 1.50 STAYS A String RATHER THAN LOSING ITS FORM
+    static String inferType(String value) {
+        if (value.equals(String.valueOf(Boolean.parseBoolean(value)))) {
+            return "boolean";
+        }
+        if (value.matches("-?[0-9]+")) {
+            try {
+                return value.equals(String.valueOf(Integer.parseInt(value))) ? "int" : "String";
+            }
+            catch (NumberFormatException nfe) {
+                try {
+                    return value.equals(String.valueOf(Long.parseLong(value))) ? "long" : "String";
+                }
+                catch (NumberFormatException nfe2) {
+                    return "String";
+                }
+            }
+        }
+        if (value.matches("-?[0-9]*\\.[0-9]+([eE][-+]?[0-9]+)?")) {
+            return value.equals(String.valueOf(Double.parseDouble(value))) ? "double" : "String";
+        }
+        return "String";
+    }
+
+    private static String toParseExpression(String type, String valueExpression) {
+        switch (type) {
+            case "boolean": return "Boolean.parseBoolean(" + valueExpression + ")";
+            case "int":     return "Integer.parseInt(" + valueExpression + ")";
+            case "long":    return "Long.parseLong(" + valueExpression + ")";
+            case "double":  return "Double.parseDouble(" + valueExpression + ")";
+            default:        return valueExpression;
+        }
+    }
+
+    // TURNS ANY TEXT INTO A LEGAL JAVA IDENTIFIER
+    private static String toIdentifier(String name) {
+        StringBuilder identifier = new StringBuilder();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            identifier.append(c < 128 && Character.isJavaIdentifierPart(c) ? c : '_');
+        }
+        if (identifier.length() == 0 || !Character.isJavaIdentifierStart(identifier.charAt(0))) {
+            identifier.insert(0, '_');
+        }
+        return identifier.toString();
+    }
+
+    // MAKES A camelCase FIELD NAME FROM A NAME LIKE MY_STRING_OPTIONS
+    private static String toFieldName(String name) {
+        String identifier = toIdentifier(name);
+        StringBuilder fieldName = new StringBuilder();
+        boolean upperNext = false;
+        for (int i = 0; i < identifier.length(); i++) {
+            char c = identifier.charAt(i);
+            if (c == '_' && fieldName.length() > 0) {
+                upperNext = true;
+            }
+            else if (fieldName.length() == 0) {
+                fieldName.append(Character.toLowerCase(c));
+            }
+            else {
+                fieldName.append(upperNext ? Character.toUpperCase(c) : Character.toLowerCase(c));
+                upperNext = false;
+            }
+        }
+        return fieldName.toString();
+    }
+
+    private static String makeUnique(String name, HashSet<String> usedNames) {
+        String uniqueName = name;
+        for (int i = 2; usedNames.contains(uniqueName); i++) {
+            uniqueName = name + "_" + i;
+        }
+        usedNames.add(uniqueName);
+        return uniqueName;
+    }
+
+    private static String toStringLiterals(ArrayList<String> texts) {
+        StringBuilder literals = new StringBuilder();
+        for (int i = 0; i < texts.size(); i++) {
+            literals.append(i == 0 ? " \"" : ", \"");
+            String text = texts.get(i);
+            for (int j = 0; j < text.length(); j++) {
+                char c = text.charAt(j);
+                if (c == '"' || c == '\\') {
+                    literals.append('\\').append(c);
+                }
+                else if (c < 0x20 || c > 0x7E) {
+                    literals.append(String.format("\\u%04x", (int)c));
+                }
+                else {
+                    literals.append(c);
+                }
+            }
+            literals.append('"');
+        }
+        return literals.append(texts.isEmpty() ? "" : " ").toString();
+    }
+}
@@ -0,0 +1,190 @@
+package properties_manager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Objects;
+
+/**
+ * PropertiesBatch.java
+ *
+ * This class collects properties and property options lists to add to or
+ * remove from the properties manager so they can all be applied at once
+ * using PropertiesManager.applyBatch. This is much faster than adding
+ * them one at a time when there are many of them, and since the manager
+ * makes all the changes visible in a single step, other threads reading
+ * properties see either none of the changes or all of them.
+ *
+ * Changes are applied in the order they were made, so if the same property
+ * is added or removed more than once only the last change counts. Note
+ * that a batch isn't meant to be shared by threads, and that it may be
+ * applied any number of times.
+ *
+ * @author THE McKilla Gorilla (accept no imposters)
+ * @version 2.0
+ */
+public final class PropertiesBatch {
+    // THE PROPERTY CHANGES, IN ORDER, KEYED BY THE toString OF THE KEYS
+    // WE WERE GIVEN. THEY'RE JUST RECORDED HERE SO THAT ADDING TO A BATCH
+    // IS CHEAP, THE MANAGER DOES ALL THE HASHING WHEN IT'S APPLIED
+    private String[] propertyKeys;
+    private String[] propertyValues;
+    private BitSet propertyRemovals;
+    private int numPropertyChanges;
+
+    // OPTIONS LISTS ARE FEW, SO THEY'RE KEPT BY KEY. NOTE A KEY IS NEVER
+    // BOTH ADDED AND REMOVED
+    private final HashMap<String, PropertyOptionsList> propertyOptionsLists;
+    private final HashSet<String> removedPropertyOptionsLists;
+
+    /**
+     * Default constructor, for a batch that starts out empty.
+     */
+    public PropertiesBatch() {
+        this(16);
+    }
+
+    /**
+     * Constructor for a batch that will have about expectedNumProperties
+     * properties added to it, which saves growing it as they're added.
+     *
+     * @param expectedNumProperties How many properties are expected.
+     */
+    public PropertiesBatch(int expectedNumProperties) {
+        propertyKeys = new String[Math.max(expectedNumProperties, 1)];
+        propertyValues = new String[propertyKeys.length];
+        propertyRemovals = new BitSet();
+        propertyOptionsLists = new HashMap<>();
+        removedPropertyOptionsLists = new HashSet<>();
+    }
+
+    /**
+     * This method adds the (property, value) tuple to this batch, it
+     * will be added to the manager when the batch is applied.
+     *
+     * @param property Key, i.e. property type for this pair.
+     *
+     * @param value The data for this pair.
+     */
+    public void addProperty(Object property, String value) {
+        addPropertyChange(property.toString(), value);
+    }
+
+    /**
+     * This method adds the (propertyOptions, list) tuple to this batch,
+     * it will be added to the manager when the batch is applied.
+     *
+     * @param propertyOptions Key, i.e. property options type for this pair.
+     *
+     * @param list The data for this pair. Note that it is copied, so
+     * changing it afterwards will not change the batch. As with the
+     * manager's addPropertyOptionsList, it can't be null.
+     *
+     * @throws NullPointerException Thrown if list is null.
+     */
+    public void addPropertyOptionsList(Object propertyOptions, ArrayList<String> list) {
+        Objects.requireNonNull(list, "Property options list can't be null, use removePropertyOptionsList instead");
+        String key = propertyOptions.toString();
+        propertyOptionsLists.put(key, new PropertyOptionsList(list));
+        if (!removedPropertyOptionsLists.isEmpty()) {
+            removedPropertyOptionsLists.remove(key);
+        }
+    }
+
+    /**
+     * This method adds removing the propertyToRemove property to this
+     * batch, it will be removed from the manager when the batch is applied.
+     *
+     * @param propertyToRemove The property to remove from the manager.
+     */
+    public void removeProperty(Object propertyToRemove) {
+        propertyRemovals.set(numPropertyChanges);
+        addPropertyChange(propertyToRemove.toString(), null);
+    }
+
+    /**
+     * This method adds removing the propertyOptionsListToRemove list to
+     * this batch, it will be removed from the manager when the batch is
+     * applied.
+     *
+     * @param propertyOptionsListToRemove The property options list to
+     * remove from the manager.
+     */
+    public void removePropertyOptionsList(Object propertyOptionsListToRemove) {
+        String key = propertyOptionsListToRemove.toString();
+        propertyOptionsLists.remove(key);
+        removedPropertyOptionsLists.add(key);
+    }
+
+    /**
+     * This method gets the number of changes in this batch. Note that
+     * every property added or removed counts, even if the same property
+     * was changed before, but options lists are only counted once each.
+     *
+     * @return The number of changes that would be applied.
+     */
+    public int size() {
+        return numPropertyChanges + propertyOptionsLists.size() + removedPropertyOptionsLists.size();
+    }
+
+    /**
+     * Accessor method for testing to see if this batch has any changes.
+     *
+     * @return true if there are no changes, false otherwise.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * This method throws out all the changes in this batch so it can
+     * be used again.
+     */
+    public void clear() {
+        Arrays.fill(propertyKeys, 0, numPropertyChanges, null);
+        Arrays.fill(propertyValues, 0, numPropertyChanges, null);
+        propertyRemovals.clear();
+        numPropertyChanges = 0;
+        propertyOptionsLists.clear();
+        removedPropertyOptionsLists.clear();
+    }
+
+    // RECORDS A CHANGE TO A PROPERTY, MAKING ROOM IF NEEDED
+    private void addPropertyChange(String key, String value) {
+        if (numPropertyChanges == propertyKeys.length) {
+            propertyKeys = Arrays.copyOf(propertyKeys, numPropertyChanges * 2);
+            propertyValues = Arrays.copyOf(propertyValues, numPropertyChanges * 2);
+        }
+        propertyKeys[numPropertyChanges] = key;
+        propertyValues[numPropertyChanges] = value;
+        numPropertyChanges++;
+    }
+
+    // THESE ARE FOR THE MANAGER, WHICH MUST NOT CHANGE THEM
+
+    int getNumPropertyChanges() {
+        return numPropertyChanges;
+    }
+
+    String getPropertyKey(int index) {
+        return propertyKeys[index];
+    }
+
+    String getPropertyValue(int index) {
+        return propertyValues[index];
+    }
+
+    boolean isPropertyRemoval(int index) {
+        return propertyRemovals.get(index);
+    }
+
+    HashMap<String, PropertyOptionsList> getPropertyOptionsLists() {
+        return propertyOptionsLists;
+    }
+
+    HashSet<String> getRemovedPropertyOptionsLists() {
+        return removedPropertyOptionsLists;
+    }
+}
@@ -0,0 +1,139 @@
+package properties_manager;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * PropertiesBundle.java
+ *
+ * This class holds the properties and property options lists for one
+ * locale, like the text of a user interface in Canadian French, and is
+ * gotten from the properties manager using getBundle. A bundle is made
+ * from a chain of files in the properties data path, like strings.xml,
+ * strings_fr.xml, and strings_fr_CA.xml, each of which only needs to have
+ * what's different for its locale, the rest comes from the files before
+ * it in the chain.
+ *
+ * Everything a bundle has is looked up in a single table made when the
+ * bundle is loaded. The table is made from that of the less specific bundle
+ * by putting in just what's in the bundle's own file, and it shares all the
+ * rest with that table, so each locale only costs as much memory as what's
+ * different about it. Bundles never change once loaded, so
+ * any number of threads may read from any number of them without waiting
+ * on one another.
+ *
+ * @author THE McKilla Gorilla (accept no imposters)
+ * @version 2.0
+ */
+public final class PropertiesBundle {
+    // THE LOCALE THIS BUNDLE IS FOR
+    private final Locale locale;
+
+    // EVERYTHING IN THIS BUNDLE AND THE ONES IT WAS MADE FROM, THESE ARE
+    // NEVER CHANGED AND MAY BE SHARED WITH THE BUNDLES FOR OTHER LOCALES
+    private final PropertyTable<String> properties;
+    private final PropertyTable<PropertyOptionsList> propertyOptionsLists;
+
+    /**
+     * Only the properties manager makes bundles, giving them tables
+     * it promises not to change.
+     */
+    PropertiesBundle(   Locale initLocale,
+                        PropertyTable<String> initProperties,
+                        PropertyTable<PropertyOptionsList> initPropertyOptionsLists) {
+        locale = initLocale;
+        properties = initProperties;
+        propertyOptionsLists = initPropertyOptionsLists;
+    }
+
+    /**
+     * Accessor method for the locale this bundle is for.
+     *
+     * @return The locale that was asked for when this bundle was loaded.
+     */
+    public Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * Accessor method for getting a property from this bundle.
+     *
+     * @param property The key for getting a property.
+     *
+     * @return The value associated with the key.
+     */
+    public String getProperty(Object property) {
+        return properties.get(property.toString());
+    }
+
+    /**
+     * Accessor method for testing to see if a particular
+     * property is in this bundle.
+     *
+     * @param property The key for getting a property.
+     *
+     * @return true if the property is in this bundle, false otherwise.
+     */
+    public boolean hasProperty(Object property) {
+        return properties.containsKey(property.toString());
+    }
+
+    /**
+     * Accessor method for getting a copy of a property options list
+     * in this bundle. Changing the copy doesn't change the bundle, and
+     * since it's a new copy every time, getPropertyOptionsView should
+     * be used for reading options often.
+     *
+     * @param property The key for accessing the property options list.
+     *
+     * @return A copy of the property options list associated with the key.
+     */
+    public ArrayList<String> getPropertyOptionsList(Object property) {
+        PropertyOptionsList options = getPropertyOptionsView(property);
+        if (options == null) {
+            return null;
+        }
+        return new ArrayList<>(options);
+    }
+
+    /**
+     * Accessor method for getting the immutable property options list
+     * in this bundle.
+     *
+     * @param property The key for accessing the property options list.
+     *
+     * @return The property options list associated with the key.
+     */
+    public PropertyOptionsList getPropertyOptionsView(Object property) {
+        return propertyOptionsLists.get(property.toString());
+    }
+
+    /**
+     * This method gets the number of properties in this bundle.
+     *
+     * @return The number of properties in this bundle.
+     */
+    public int getNumProperties() {
+        return properties.size();
+    }
+
+    /**
+     * This method gets the number of property options lists in this
+     * bundle.
+     *
+     * @return The number of property options lists in this bundle.
+     */
+    public int getNumPropertyOptionsLists() {
+        return propertyOptionsLists.size();
+    }
+
+    // THESE ARE FOR THE MANAGER, FOR MAKING MORE SPECIFIC BUNDLES
+
+    PropertyTable<String> getProperties() {
+        return properties;
+    }
+
+    PropertyTable<PropertyOptionsList> getPropertyOptionsLists() {
+        return propertyOptionsLists;
+    }
+}
@@ -0,0 +1,544 @@
+package properties_manager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import static properties_manager.PropertiesManager.NAME_ATT;
+import static properties_manager.PropertiesManager.OPTION_ELEMENT;
+import static properties_manager.PropertiesManager.PROPERTY_ELEMENT;
+import static properties_manager.PropertiesManager.PROPERTY_OPTIONS_ELEMENT;
+import static properties_manager.PropertiesManager.VALUE_ATT;
+
+/**
+ * PropertiesFileScanner.java
+ *
+ * This class pulls the properties and options lists straight out of the
+ * bytes of a properties XML file without building a DOM tree, which lets
+ * the properties manager load files in lazy mode. Property names and
+ * options are decoded as they are found, but property values are only
+ * recorded as where they are in the bytes, see LazyPropertyValue. Once
+ * the whole file is scanned, the bytes of just the values are copied into
+ * one array so the rest of the file's bytes don't have to be kept.
+ *
+ * Note that this is not a general XML parser. It expects a file that has
+ * already been validated against properties_schema.xsd, and it only works
+ * for UTF-8 files without a DOCTYPE, since a DTD could declare entities or
+ * default attributes. Use canScan to test a file first.
+ *
+ * @author THE McKilla Gorilla (accept no imposters)
+ * @version 2.0
+ */
+class PropertiesFileScanner {
+    // THESE ARE ALL WE NEED TO SEARCH FOR, AS BYTES
+    private static final byte[] XML_DECLARATION_START   = bytes("<?xml");
+    private static final byte[] PI_START                = bytes("<?");
+    private static final byte[] PI_END                  = bytes("?>");
+    private static final byte[] COMMENT_START           = bytes("<!--");
+    private static final byte[] COMMENT_END             = bytes("-->");
+    private static final byte[] CDATA_START             = bytes("<![CDATA[");
+    private static final byte[] CDATA_END               = bytes("]]>");
+    private static final byte[] DOCTYPE_START           = bytes("<!DOCTYPE");
+    private static final byte[] END_TAG_START           = bytes("</");
+    private static final byte[] TAG_END                 = bytes(">");
+    private static final byte[] UTF8_BYTE_ORDER_MARK    = {(byte)0xEF, (byte)0xBB, (byte)0xBF};
+    private static final byte[] PROPERTY_NAME           = bytes(PROPERTY_ELEMENT);
+    private static final byte[] PROPERTY_OPTIONS_NAME   = bytes(PROPERTY_OPTIONS_ELEMENT);
+    private static final byte[] OPTION_NAME             = bytes(OPTION_ELEMENT);
+    private static final byte[] NAME_ATT_NAME           = bytes(NAME_ATT);
+    private static final byte[] VALUE_ATT_NAME          = bytes(VALUE_ATT);
+
+    // THE FILE WE'RE SCANNING AND ITS NAME FOR ERROR MESSAGES
+    private final byte[] xml;
+    private final String xmlFile;
+
+    // WHERE IN THE FILE WE ARE NOW
+    private int pos;
+
+    // LINES ARE ONLY COUNTED AS FAR AS THE LAST ELEMENT WE RECORDED
+    private int lineNumber;
+    private int lineCountedTo;
+
+    // THE ATTRIBUTES OF THE ELEMENT WE JUST READ, -1 IF NOT FOUND
+    private int nameStart, nameEnd, valueStart, valueEnd;
+
+    // THE NAMES OF THE PROPERTIES FOUND AND WHERE THEIR VALUES ARE
+    private ArrayList<String> propertyNames;
+    private int[] valueOffsets;
+    private int[] valueLengths;
+    private int[] valueLineNumbers;
+
+    /**
+     * Constructor for a scanner of one file's bytes.
+     *
+     * @param initXML All the bytes of the XML file.
+     *
+     * @param initXMLFile Name of the XML file, for error messages.
+     */
+    PropertiesFileScanner(byte[] initXML, String initXMLFile) {
+        xml = initXML;
+        xmlFile = initXMLFile;
+    }
+
+    /**
+     * This method tests to see if the file's bytes can be read by
+     * this scanner, which is true for UTF-8 files that have no DOCTYPE.
+     *
+     * @param xml All the bytes of the XML file.
+     *
+     * @return true if the file can be scanned, false if it has to
+     * be loaded some other way.
+     */
+    static boolean canScan(byte[] xml) {
+        int start = startsWith(xml, 0, UTF8_BYTE_ORDER_MARK) ? UTF8_BYTE_ORDER_MARK.length : 0;
+
+        // NO UTF-16 BYTE ORDER MARKS OR OTHER ENCODINGS
+        if (xml.length - start < 2 || xml[start + 1] == 0
+                || xml[start] != '<' && !isWhitespace(xml[start])) {
+            return false;
+        }
+        if (startsWith(xml, start, XML_DECLARATION_START)) {
+            int end = indexOf(xml, start, PI_END);
+            if (end < 0) {
+                return false;
+            }
+            String declaration = new String(xml, start, end - start, StandardCharsets.ISO_8859_1);
+            int encodingIndex = declaration.indexOf("encoding");
+            if (encodingIndex >= 0) {
+                int quoteIndex = encodingIndex + "encoding".length();
+                while (quoteIndex < declaration.length()
+                        && declaration.charAt(quoteIndex) != '"'
+                        && declaration.charAt(quoteIndex) != '\'') {
+                    quoteIndex++;
+                }
+                if (quoteIndex >= declaration.length()) {
+                    return false;
+                }
+                int endQuoteIndex = declaration.indexOf(declaration.charAt(quoteIndex), quoteIndex + 1);
+                if (endQuoteIndex < 0) {
+                    return false;
+                }
+                String encoding = declaration.substring(quoteIndex + 1, endQuoteIndex);
+                if (!encoding.equalsIgnoreCase("UTF-8")
+                        && !encoding.equalsIgnoreCase("UTF8")
+                        && !encoding.equalsIgnoreCase("US-ASCII")) {
+                    return false;
+                }
+            }
+            start = end + PI_END.length;
+        }
+
+        // NOW MAKE SURE THERE'S NO DOCTYPE BEFORE THE ROOT ELEMENT
+        int pos = start;
+        while (true) {
+            pos = indexOf(xml, pos, (byte)'<');
+            if (pos < 0) {
+                return false;
+            }
+            if (startsWith(xml, pos, COMMENT_START)) {
+                pos = indexOf(xml, pos, COMMENT_END);
+            }
+            else if (startsWith(xml, pos, PI_START)) {
+                pos = indexOf(xml, pos, PI_END);
+            }
+            else {
+                return !startsWith(xml, pos, DOCTYPE_START);
+            }
+            if (pos < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * This method scans the whole file, putting each property it finds
+     * into lazyProperties and each options list into propertyOptionsLists,
+     * and recording the line each options list was found on and anything
+     * found twice in provenance.
+     *
+     * @param lazyProperties Where to put the properties found.
+     *
+     * @param propertyOptionsLists Where to put the options lists found.
+     *
+     * @param provenance Where to record sources and conflicts.
+     *
+     * @throws InvalidXMLFileFormatException Thrown if the file isn't laid
+     * out the way properties_schema.xsd requires.
+     */
+    void scan(  HashMap<String, LazyPropertyValue> lazyProperties,
+                HashMap<String, PropertyOptionsList> propertyOptionsLists,
+                PropertyProvenance provenance)
+            throws InvalidXMLFileFormatException {
+        String optionsName = null;
+        ArrayList<String> options = null;
+        propertyNames = new ArrayList<>();
+        valueOffsets = new int[64];
+        valueLengths = new int[64];
+        valueLineNumbers = new int[64];
+        pos = 0;
+        lineNumber = 1;
+        lineCountedTo = 0;
+        while ((pos = indexOf(xml, pos, (byte)'<')) >= 0) {
+            if (startsWith(xml, pos, COMMENT_START)) {
+                pos = skipPast(COMMENT_END);
+            }
+            else if (startsWith(xml, pos, PI_START)) {
+                pos = skipPast(PI_END);
+            }
+            else if (startsWith(xml, pos, CDATA_START)) {
+                pos = skipPast(CDATA_END);
+            }
+            else if (startsWith(xml, pos, END_TAG_START)) {
+                pos += END_TAG_START.length;
+                int elementStart = pos;
+                int elementEnd = skipName();
+                pos = skipPast(TAG_END);
+                if (options != null && regionEquals(elementStart, elementEnd, PROPERTY_OPTIONS_NAME)) {
+                    propertyOptionsLists.put(optionsName, new PropertyOptionsList(options));
+                    options = null;
+                }
+            }
+            else {
+                // IT'S A START TAG
+                int tagStart = pos++;
+                int elementStart = pos;
+                int elementEnd = skipName();
+                boolean isEmpty = readAttributes();
+                if (regionEquals(elementStart, elementEnd, PROPERTY_NAME)) {
+                    if (nameStart < 0 || valueStart < 0) {
+                        throw new InvalidXMLFileFormatException(xmlFile);
+                    }
+                    String name = decodeAttributeValue(xml, nameStart, nameEnd - nameStart);
+                    addValue(name, valueStart, valueEnd - valueStart, getLineNumber(tagStart));
+                }
+                else if (regionEquals(elementStart, elementEnd, PROPERTY_OPTIONS_NAME)) {
+                    if (nameStart < 0) {
+                        throw new InvalidXMLFileFormatException(xmlFile);
+                    }
+                    optionsName = decodeAttributeValue(xml, nameStart, nameEnd - nameStart);
+                    provenance.addOptionsListSource(optionsName, new PropertySource(xmlFile, getLineNumber(tagStart)));
+                    options = new ArrayList<>();
+                    if (isEmpty) {
+                        propertyOptionsLists.put(optionsName, new PropertyOptionsList(options));
+                        options = null;
+                    }
+                }
+                else if (options != null && regionEquals(elementStart, elementEnd, OPTION_NAME)) {
+                    options.add(isEmpty ? "" : readText());
+                }
+            }
+        }
+        packValues(lazyProperties, provenance);
+    }
+
+    private void addValue(String name, int offset, int length, int line) {
+        int index = propertyNames.size();
+        if (index == valueOffsets.length) {
+            valueOffsets = Arrays.copyOf(valueOffsets, index * 2);
+            valueLengths = Arrays.copyOf(valueLengths, index * 2);
+            valueLineNumbers = Arrays.copyOf(valueLineNumbers, index * 2);
+        }
+        propertyNames.add(name);
+        valueOffsets[index] = offset;
+        valueLengths[index] = length;
+        valueLineNumbers[index] = line;
+    }
+
+    // COUNTS LINES UP TO position, WHICH MUST NOT BE BEFORE THE LAST
+    // POSITION ASKED ABOUT. NOTE A \r ON ITS OWN ALSO ENDS A LINE
+    private int getLineNumber(int position) {
+        for (; lineCountedTo < position; lineCountedTo++) {
+            byte b = xml[lineCountedTo];
+            if (b == '\n' || b == '\r' && xml[lineCountedTo + 1] != '\n') {
+                lineNumber++;
+            }
+        }
+        return lineNumber;
+    }
+
+    // COPIES ALL THE VALUES INTO ONE ARRAY AND MAKES THE LAZY VALUES FOR IT
+    private void packValues(HashMap<String, LazyPropertyValue> lazyProperties, PropertyProvenance provenance) {
+        int numValues = propertyNames.size();
+        long totalLength = 0;
+        for (int i = 0; i < numValues; i++) {
+            totalLength += valueLengths[i];
+        }
+        byte[] values = new byte[(int)totalLength];
+        int packedOffset = 0;
+        for (int i = 0; i < numValues; i++) {
+            System.arraycopy(xml, valueOffsets[i], values, packedOffset, valueLengths[i]);
+            String name = propertyNames.get(i);
+            LazyPropertyValue value = new LazyPropertyValue(values, packedOffset, valueLengths[i], xmlFile, valueLineNumbers[i]);
+            LazyPropertyValue overriddenValue = lazyProperties.put(name, value);
+            if (overriddenValue != null) {
+                provenance.addConflict(new PropertyConflict(name, false, overriddenValue.getSource(), value.getSource()));
+            }
+            packedOffset += valueLengths[i];
+        }
+        propertyNames = null;
+        valueOffsets = valueLengths = valueLineNumbers = null;
+    }
+
+    // READS THE ATTRIBUTES OF THE START TAG WE'RE IN, REMEMBERING WHERE
+    // THE name AND value ATTRIBUTES ARE, AND RETURNS true IF IT'S AN
+    // EMPTY ELEMENT LIKE <option/>
+    private boolean readAttributes() throws InvalidXMLFileFormatException {
+        nameStart = nameEnd = valueStart = valueEnd = -1;
+        while (true) {
+            skipWhitespace();
+            if (pos >= xml.length) {
+                throw new InvalidXMLFileFormatException(xmlFile);
+            }
+            if (xml[pos] == '>') {
+                pos++;
+                return false;
+            }
+            if (xml[pos] == '/') {
+                pos = skipPast(TAG_END);
+                return true;
+            }
+            int attStart = pos;
+            int attEnd = skipName();
+            skipWhitespace();
+            if (pos >= xml.length || xml[pos] != '=') {
+                throw new InvalidXMLFileFormatException(xmlFile);
+            }
+            pos++;
+            skipWhitespace();
+            if (pos >= xml.length || (xml[pos] != '"' && xml[pos] != '\'')) {
+                throw new InvalidXMLFileFormatException(xmlFile);
+            }
+            int start = pos + 1;
+            int end = indexOf(xml, start, xml[pos]);
+            if (end < 0) {
+                throw new InvalidXMLFileFormatException(xmlFile);
+            }
+            pos = end + 1;
+            if (regionEquals(attStart, attEnd, NAME_ATT_NAME)) {
+                nameStart = start;
+                nameEnd = end;
+            }
+            else if (regionEquals(attStart, attEnd, VALUE_ATT_NAME)) {
+                valueStart = start;
+                valueEnd = end;
+            }
+        }
+    }
+
+    // READS THE TEXT OF THE ELEMENT WE'RE IN UP TO ITS END TAG, WHICH MAY
+    // BE BROKEN UP BY CDATA SECTIONS, COMMENTS, AND PROCESSING INSTRUCTIONS
+    private String readText() throws InvalidXMLFileFormatException {
+        StringBuilder text = null;
+        String firstPart = null;
+        while (true) {
+            int end = indexOf(xml, pos, (byte)'<');
+            if (end < 0) {
+                throw new InvalidXMLFileFormatException(xmlFile);
+            }
+            String part = null;
+            if (end > pos) {
+                part = decodeText(xml, pos, end - pos);
+            }
+            pos = end;
+            if (startsWith(xml, pos, CDATA_START)) {
+                int cdataStart = pos + CDATA_START.length;
+                int cdataEnd = indexOf(xml, cdataStart, CDATA_END);
+                if (cdataEnd < 0) {
+                    throw new InvalidXMLFileFormatException(xmlFile);
+                }
+                String cdata = normalizeLineEnds(new String(xml, cdataStart, cdataEnd - cdataStart, StandardCharsets.UTF_8));
+                part = part == null ? cdata : part + cdata;
+                pos = cdataEnd + CDATA_END.length;
+            }
+            else if (startsWith(xml, pos, COMMENT_START)) {
+                pos = skipPast(COMMENT_END);
+            }
+            else if (startsWith(xml, pos, PI_START)) {
+                pos = skipPast(PI_END);
+            }
+            else if (!startsWith(xml, pos, END_TAG_START)) {
+                // OPTIONS CAN'T HAVE CHILD ELEMENTS
+                throw new InvalidXMLFileFormatException(xmlFile);
+            }
+
+            // MOST OF THE TIME THERE'S ONLY ONE PART SO AVOID THE BUILDER
+            if (part != null) {
+                if (firstPart == null) {
+                    firstPart = part;
+                }
+                else {
+                    if (text == null) {
+                        text = new StringBuilder(firstPart);
+                    }
+                    text.append(part);
+                }
+            }
+            if (startsWith(xml, pos, END_TAG_START)) {
+                if (text != null) {
+                    return text.toString();
+                }
+                return firstPart == null ? "" : firstPart;
+            }
+        }
+    }
+
+    private int skipName() {
+        while (pos < xml.length) {
+            byte b = xml[pos];
+            if (isWhitespace(b) || b == '>' || b == '/' || b == '=') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    private void skipWhitespace() {
+        while (pos < xml.length && isWhitespace(xml[pos])) {
+            pos++;
+        }
+    }
+
+    private int skipPast(byte[] pattern) throws InvalidXMLFileFormatException {
+        int index = indexOf(xml, pos, pattern);
+        if (index < 0) {
+            throw new InvalidXMLFileFormatException(xmlFile);
+        }
+        return index + pattern.length;
+    }
+
+    private boolean regionEquals(int start, int end, byte[] name) {
+        return end - start == name.length && startsWith(xml, start, name);
+    }
+
+    // THESE DO THE DECODING OF TEXT AND ATTRIBUTE VALUES THE WAY AN XML
+    // PARSER WOULD, RESOLVING REFERENCES AND NORMALIZING WHITESPACE
+
+    /**
+     * This method turns the bytes of an attribute value into the String
+     * an XML parser would give for it.
+     *
+     * @param xml The bytes the value is in.
+     *
+     * @param offset Where the value starts, after its opening quote.
+     *
+     * @param length How many bytes are in the value.
+     *
+     * @return The decoded value.
+     */
+    static String decodeAttributeValue(byte[] xml, int offset, int length) {
+        String raw = new String(xml, offset, length, StandardCharsets.UTF_8);
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c == '&' || c == '\r' || c == '\n' || c == '\t') {
+                return resolve(raw, i, true);
+            }
+        }
+        return raw;
+    }
+
+    private static String decodeText(byte[] xml, int offset, int length) {
+        String raw = new String(xml, offset, length, StandardCharsets.UTF_8);
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c == '&' || c == '\r') {
+                return resolve(raw, i, false);
+            }
+        }
+        return raw;
+    }
+
+    private static String normalizeLineEnds(String raw) {
+        int index = raw.indexOf('\r');
+        return index < 0 ? raw : resolve(raw, index, false);
+    }
+
+    // DOES THE WORK FOR THE DECODE METHODS STARTING AT start, WHICH
+    // IS THE FIRST CHARACTER THAT NEEDS ANY
+    private static String resolve(String raw, int start, boolean isAttribute) {
+        StringBuilder result = new StringBuilder(raw.length());
+        result.append(raw, 0, start);
+        for (int i = start; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c == '\r') {
+                // \r\n AND \r ARE BOTH READ AS \n
+                if (i + 1 < raw.length() && raw.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                result.append(isAttribute ? ' ' : '\n');
+            }
+            else if (isAttribute && (c == '\n' || c == '\t')) {
+                result.append(' ');
+            }
+            else if (c == '&') {
+                int end = raw.indexOf(';', i);
+                if (end < 0) {
+                    result.append(c);
+                    continue;
+                }
+                String reference = raw.substring(i + 1, end);
+                if (reference.equals("lt"))         result.append('<');
+                else if (reference.equals("gt"))    result.append('>');
+                else if (reference.equals("amp"))   result.append('&');
+                else if (reference.equals("quot"))  result.append('"');
+                else if (reference.equals("apos"))  result.append('\'');
+                else if (reference.startsWith("#x")) {
+                    result.appendCodePoint(Integer.parseInt(reference.substring(2), 16));
+                }
+                else if (reference.startsWith("#")) {
+                    result.appendCodePoint(Integer.parseInt(reference.substring(1)));
+                }
+                else {
+                    // NOT SOMETHING WE KNOW, SO LEAVE IT ALONE
+                    result.append(raw, i, end + 1);
+                }
+                i = end;
+            }
+            else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    // THESE ARE BASIC BYTE SEARCHING HELPERS
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static boolean startsWith(byte[] xml, int pos, byte[] pattern) {
+        if (pos + pattern.length > xml.length) {
+            return false;
+        }
+        for (int i = 0; i < pattern.length; i++) {
+            if (xml[pos + i] != pattern[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] xml, int from, byte b) {
+        for (int i = from; i < xml.length; i++) {
+            if (xml[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(byte[] xml, int from, byte[] pattern) {
+        int last = xml.length - pattern.length;
+        for (int i = from; i <= last; i++) {
+            if (xml[i] == pattern[0] && startsWith(xml, i, pattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
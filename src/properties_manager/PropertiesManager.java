@@ -1,7 +1,22 @@
 package properties_manager;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import org.w3c.dom.Document;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
@@ -31,6 +46,14 @@ import org.w3c.dom.Node;
  * it is designed to be used with enumerations such that properties
  * are sent in as objects and keyed using their toStrings.
  * 
+ * Note that properties may be changed by one thread while others are
+ * reading them. Reading never waits and never sees a change half made,
+ * since every change replaces everything the manager has in one step
+ * rather than changing it in place. Still, code that reads several
+ * properties and needs them to be consistent with one another should get
+ * a PropertiesSnapshot using getSnapshot and read from that instead, since
+ * a change may be made between two reads.
+ * 
  * @author THE McKilla Gorilla (accept no imposters)
  * @version 2.0
  */
@@ -38,11 +61,14 @@ public class PropertiesManager {
     // THIS CLASS IS A SINGLETON, AND HERE IS THE ONLY OBJECT
     private static PropertiesManager singleton = null;
 
-    // WE'LL STORE PROPERTIES HERE
-    private HashMap<String, String> properties;
+    // WE'LL STORE PROPERTIES AND LISTS OF PROPERTY OPTIONS HERE. IT'S
+    // NEVER CHANGED, EVERY CHANGE MAKES A NEW ONE WITH A NEW VERSION, SO
+    // IT CAN BE READ AND SHARED WITH SNAPSHOTS WITHOUT SYNCHRONIZING
+    private volatile PropertiesState state;
 
-    // LISTS OF PROPERTY OPTIONS CAN BE STORED HERE
-    private HashMap<String, ArrayList<String>> propertyOptionsLists;
+    // WHERE EVERYTHING WAS LOADED FROM AND WHAT WAS LOADED MORE THAN
+    // ONCE, THIS IS ONLY USED WHILE SYNCHRONIZED
+    private PropertyProvenance provenance;
 
     // THIS WILL LOAD THE XML FOR US
     private XMLUtilities xmlUtil;
@@ -51,6 +77,21 @@ public class PropertiesManager {
     // FILES ARE TO BE KEPT, THIS MUST BE SET BEFORE LOADING
     private String propertiesDataPath;
 
+    // WHEN THIS IS ON, PROPERTY VALUES AREN'T DECODED UNTIL THEY'RE USED
+    private volatile boolean lazyLoading;
+
+    // WHEN THIS IS ON, ${NAME} REFERENCES IN VALUES THAT ARE ADDED OR
+    // LOADED ARE FILLED IN WITH THE VALUES OF THOSE PROPERTIES
+    private volatile boolean interpolating;
+
+    // THIS KEEPS TRACK OF PROPERTIES WITH REFERENCES, AND IS ONLY USED
+    // WHILE SYNCHRONIZED
+    private PropertyInterpolator interpolator;
+
+    // THE BUNDLES LOADED SO FAR, KEYED BY THEIR FILE NAMES WITHOUT .xml,
+    // LIKE strings_fr_CA. THESE ARE READ WITHOUT SYNCHRONIZING
+    private final ConcurrentHashMap<String, PropertiesBundle> bundles;
+
     // THESE CONSTANTS ARE USED FOR LOADING PROPERTIES AS THEY ARE
     // THE ESSENTIAL ELEMENTS AND ATTRIBUTES
     public static final String PROPERTY_ELEMENT                 = "property";
@@ -64,12 +105,17 @@ public class PropertiesManager {
     // THIS IS THE PROPERTIES FILE AGAINST WHICH ALL VALIDATION WILL BE DONE
     public static final String PROPERTIES_SCHEMA_FILE_NAME = "properties_schema.xsd";
 
+    // BUNDLE FILES ARE NAMED LIKE strings_fr_CA.xml
+    public static final String BUNDLE_FILE_EXTENSION = ".xml";
+
     /**
      * The constructor is private because this is a singleton.
      */
     private PropertiesManager() {
-        properties = new HashMap<>();
-        propertyOptionsLists = new HashMap<>();
+        state = PropertiesState.EMPTY;
+        provenance = new PropertyProvenance();
+        interpolator = new PropertyInterpolator();
+        bundles = new ConcurrentHashMap<>();
         xmlUtil = new XMLUtilities();
     }
 
@@ -97,6 +143,103 @@ public class PropertiesManager {
         propertiesDataPath = initPropertiesDataPath;
     }
 
+    /**
+     * Accessor method for testing to see if properties files are
+     * loaded in lazy mode.
+     * 
+     * @return true if lazy mode is on, false otherwise.
+     */
+    public boolean isLazyLoading() {
+        return lazyLoading;
+    }
+
+    /**
+     * Mutator method for turning lazy mode on or off. In lazy mode
+     * loadProperties doesn't decode property values, it keeps the bytes
+     * of the file and only decodes each value the first time it's asked
+     * for, so properties that are never used cost very little. This is
+     * only worth it for big files where most properties won't be used.
+     * Note that lazy mode only works for UTF-8 files without a DOCTYPE,
+     * other files are loaded the normal way.
+     * 
+     * @param initLazyLoading true to turn lazy mode on, false to turn it off.
+     */
+    public void setLazyLoading(boolean initLazyLoading) {
+        lazyLoading = initLazyLoading;
+    }
+
+    /**
+     * Accessor method for testing to see if references to other properties
+     * in property values are filled in.
+     * 
+     * @return true if interpolation is on, false otherwise.
+     */
+    public boolean isInterpolating() {
+        return interpolating;
+    }
+
+    /**
+     * Mutator method for turning interpolation on or off. While it's on,
+     * a ${NAME} in the value of a property that's added or loaded is
+     * replaced by the value of the NAME property, so a property with the
+     * value ${BASE_URL}/api will have the BASE_URL property's value followed
+     * by /api. Values are filled in when they are added or loaded, and
+     * again whenever a property they refer to changes, so getting them
+     * costs no more than getting any other property. References to
+     * properties that don't exist are left as written, as are the values
+     * of cyclic properties, see getCyclicProperties. Note that this only
+     * affects properties added or loaded after it is turned on, and that
+     * property options lists are never interpolated.
+     * 
+     * @param initInterpolating true to turn interpolation on, false to
+     * turn it off.
+     */
+    public void setInterpolating(boolean initInterpolating) {
+        interpolating = initInterpolating;
+    }
+
+    /**
+     * Accessor method for getting a property's value as it was written,
+     * before references to other properties were filled in.
+     * 
+     * @param property The key for getting a property.
+     * 
+     * @return The value as it was added or loaded.
+     */
+    public String getRawProperty(Object property) {
+        return state.getRawProperty(property.toString());
+    }
+
+    /**
+     * This method gets the names of all properties whose references lead
+     * back to themselves, like A with the value ${B} and B with the value
+     * ${A}, or to a property that does. Their references can't be filled
+     * in, so their values are left as written.
+     * 
+     * @return The names of the properties that couldn't be interpolated.
+     */
+    public synchronized ArrayList<String> getCyclicProperties() {
+        return interpolator.getCyclicProperties();
+    }
+
+    /**
+     * Mutator method for naming the JAXP parser and schema implementations
+     * used to load properties files, which saves the time JAXP would spend
+     * looking for them and can matter for programs that only run briefly.
+     * XMLUtilities.JDK_DOCUMENT_BUILDER_FACTORY and JDK_SCHEMA_FACTORY name
+     * the implementations built into the JDK, passing null for either
+     * goes back to the usual lookup.
+     * 
+     * @param documentBuilderFactoryClassName The DocumentBuilderFactory
+     * class to use for parsing.
+     * 
+     * @param schemaFactoryClassName The SchemaFactory class to use for
+     * validation.
+     */
+    public void setXMLImplementations(String documentBuilderFactoryClassName, String schemaFactoryClassName) {
+        xmlUtil.setImplementations(documentBuilderFactoryClassName, schemaFactoryClassName);
+    }
+
     /**
      * This is the static accessor for the singleton.
      * 
@@ -123,8 +266,16 @@ public class PropertiesManager {
      * 
      * @param value The data for this pair.
      */
-    public void addProperty(Object property, String value) {
-        properties.put(property.toString(), value);
+    public synchronized void addProperty(Object property, String value) {
+        String key = property.toString();
+        PropertiesState current = state;
+        PropertyTable.Editor<String> newProperties = current.properties.edit();
+        PropertyTable.Editor<LazyPropertyValue> newLazyProperties = current.lazyProperties.edit();
+        newProperties.put(key, value);
+        newLazyProperties.remove(key);
+        provenance.removePropertySource(key);
+        interpolate(key, value, newProperties, newLazyProperties);
+        publish(newProperties.done(), newLazyProperties.done(), current.propertyOptionsLists);
     }
 
     /**
@@ -135,19 +286,60 @@ public class PropertiesManager {
      * 
      * @param propertyOptions Key, i.e. property options type for this pair.
      * 
-     * @param list The data for this pair.
+     * @param list The data for this pair. Note that it is copied, so
+     * changing it afterwards will not change the manager's list. It
+     * can't be null, which earlier versions of this allowed, to remove
+     * a list use removePropertyOptionsList instead.
+     * 
+     * @throws NullPointerException Thrown if list is null.
      */
     public void addPropertyOptionsList(Object propertyOptions, ArrayList<String> list) {
-        this.propertyOptionsLists.put(propertyOptions.toString(), list);
+        Objects.requireNonNull(list, "Property options list can't be null, use removePropertyOptionsList instead");
+        PropertyOptionsList options = new PropertyOptionsList(list);
+        synchronized (this) {
+            String key = propertyOptions.toString();
+            PropertiesState current = state;
+            publish(current.properties, current.lazyProperties, current.propertyOptionsLists.put(key, options));
+            provenance.removeOptionsListSource(key);
+        }
     }
 
     /**
      * This method clears out all data in the manager, leaving no
-     * properties or property options lists.
+     * properties, property options lists, or bundles.
+     */
+    public synchronized void clear() {
+        bundles.clear();
+        provenance.clear();
+        interpolator.clear();
+        publish(PropertiesState.EMPTY.properties,
+                PropertiesState.EMPTY.lazyProperties,
+                PropertiesState.EMPTY.propertyOptionsLists);
+    }
+
+    /**
+     * Accessor method for the version of the manager's contents. Every
+     * change to the properties or property options lists makes a new
+     * version with a larger number.
+     * 
+     * @return The current version.
      */
-    public void clear() {
-        this.properties.clear();
-        this.propertyOptionsLists.clear();
+    public long getVersion() {
+        return state.version;
+    }
+
+    /**
+     * This method gets an unchanging view of everything currently in the
+     * manager. This is cheap to do since no data is copied and nothing waits,
+     * no matter how many properties there are, and it doesn't make later
+     * changes cost any more, so it's fine to get one for every request that
+     * needs to read properties. Note that the snapshot should be released
+     * when it's no longer needed.
+     * 
+     * @return A snapshot of the current properties and options lists.
+     */
+    public PropertiesSnapshot getSnapshot() {
+        return new PropertiesSnapshot(state);
     }
 
     /**
@@ -157,7 +349,7 @@ public class PropertiesManager {
      * @return The number of properties the manager has.
      */
     public int getNumProperties() {
-        return this.properties.keySet().size();
+        return state.getNumProperties();
     }
 
     /**
@@ -167,7 +359,7 @@ public class PropertiesManager {
      * @return The number of property options lists the manager has.
      */
     public int getNumPropertyOptionsLists() {
-        return this.propertyOptionsLists.keySet().size();
+        return state.propertyOptionsLists.size();
     }    
 
     /**
@@ -178,7 +370,7 @@ public class PropertiesManager {
      * @return The value associated with the key.
      */
     public String getProperty(Object property) {
-        return properties.get(property.toString());
+        return state.getProperty(property.toString());
     }
 
     /**
@@ -190,7 +382,7 @@ public class PropertiesManager {
      * @return true if property has been loaded, false otherwise.
      */
     public boolean hasProperty(Object property) {
-        return properties.containsKey(property.toString());
+        return state.hasProperty(property.toString());
     }
 
     /**
@@ -210,14 +402,100 @@ public class PropertiesManager {
 
     /**
      * Accessor method for getting a property options list associated
-     * with the property key.
+     * with the property key. Note that this returns a new copy of the
+     * list each time, so for code that reads the options often, like
+     * when rendering, getPropertyOptionsView should be used instead.
+     * Also note that earlier versions of this returned the manager's own
+     * list, so changes made to it changed the options in the manager.
+     * Now they only change the copy, so to change the options in the
+     * manager call addPropertyOptionsList with the changed list.
      * 
      * @param property The key for accessing the property options list.
      * 
-     * @return The property options list associated with the key.
+     * @return A copy of the property options list associated with the key.
      */
     public ArrayList<String> getPropertyOptionsList(Object property) {
-        return propertyOptionsLists.get(property.toString());
+        PropertyOptionsList options = state.propertyOptionsLists.get(property.toString());
+        if (options == null) {
+            return null;
+        }
+        return new ArrayList<>(options);
+    }
+
+    /**
+     * Accessor method for getting the immutable property options list
+     * associated with the property key. The same list object is returned
+     * every time until the options are replaced or removed, so there is
+     * no need to copy it.
+     * 
+     * @param property The key for accessing the property options list.
+     * 
+     * @return The property options list associated with the key.
+     */
+    public PropertyOptionsList getPropertyOptionsView(Object property) {
+        return state.propertyOptionsLists.get(property.toString());
+    }
+
+    /**
+     * Accessor method for where a property was loaded from. Note that
+     * the line number is only known for files loaded in lazy mode.
+     * 
+     * @param property The key for getting a property.
+     * 
+     * @return Where the property's current value was loaded from, or
+     * null if it was added by code or isn't in the manager.
+     */
+    public synchronized PropertySource getPropertySource(Object property) {
+        String key = property.toString();
+        LazyPropertyValue lazyValue = state.lazyProperties.get(key);
+        if (lazyValue != null) {
+            return lazyValue.getSource();
+        }
+        return provenance.getPropertySource(key);
+    }
+
+    /**
+     * Accessor method for where a property options list was loaded from.
+     * Note that the line number is only known for files loaded in lazy mode.
+     * 
+     * @param property The key for accessing the property options list.
+     * 
+     * @return Where the property options list was loaded from, or null
+     * if it was added by code or isn't in the manager.
+     */
+    public synchronized PropertySource getPropertyOptionsListSource(Object property) {
+        return provenance.getOptionsListSource(property.toString());
+    }
+
+    /**
+     * This method gets every property and property options list that was
+     * loaded more than once since the manager was last cleared, whether
+     * twice in the same file or in different files, and where the replaced
+     * and replacing values came from. This is useful for finding out why
+     * a property doesn't have the value it was expected to. Only the latest
+     * conflict for each property and options list is kept, and loading the
+     * same value from the same place again, like when a file that hasn't
+     * changed is reloaded, isn't a conflict.
+     * 
+     * @return The conflicts for properties, in the order they were found,
+     * followed by those for property options lists.
+     */
+    public synchronized ArrayList<PropertyConflict> getPropertyConflicts() {
+        return provenance.getConflicts();
+    }
+
+    /**
+     * This method describes every conflict found by getPropertyConflicts,
+     * one per line.
+     * 
+     * @return A textual report of the conflicts, empty if there were none.
+     */
+    public String getPropertyConflictsReport() {
+        StringBuilder report = new StringBuilder();
+        for (PropertyConflict conflict : getPropertyConflicts()) {
+            report.append(conflict).append(System.lineSeparator());
+        }
+        return report.toString();
     }
 
     /**
@@ -240,21 +518,179 @@ public class PropertiesManager {
         // GET THE SCHEMA PATH
         String xmlSchemaFile = getClass().getResource(PROPERTIES_SCHEMA_FILE_NAME).getPath();
         
+        // IN LAZY MODE WE MAY NOT NEED THE DOM AT ALL
+        if (lazyLoading && loadPropertiesLazily(xmlDataFile, xmlSchemaFile)) {
+            return;
+        }
+
+        // WE'LL PUT EVERYTHING HERE FIRST AND THEN ADD IT ALL AT ONCE
+        HashMap<String, String> loadedProperties = new HashMap<>();
+        HashMap<String, PropertyOptionsList> loadedOptionsLists = new HashMap<>();
+        
+        // THE DOM DOESN'T KNOW LINE NUMBERS, SO EVERYTHING SHARES ONE SOURCE
+        PropertyProvenance loadedProvenance = new PropertyProvenance();
+        PropertySource fileSource = new PropertySource(xmlDataFile);
+        readProperties(xmlDataFile, xmlSchemaFile, loadedProperties, loadedOptionsLists, fileSource, loadedProvenance);
+        addAll(loadedProperties, null, loadedOptionsLists, fileSource, loadedProvenance);
+    }
+
+    /**
+     * This function checks the xmlDataFile against the properties schema
+     * without loading it, reporting every error found along with where it
+     * was found, which is handy for checking files before they're used.
+     * 
+     * @param xmlDataFile XML document to check, in the properties data path.
+     * 
+     * @param collectAllErrors true to report every error in the file, false
+     * to stop at the first one.
+     * 
+     * @return What validation found, see ValidationResult.
+     */
+    public ValidationResult validateProperties(String xmlDataFile, boolean collectAllErrors) {
+        String xmlSchemaFile = getClass().getResource(PROPERTIES_SCHEMA_FILE_NAME).getPath();
+        return xmlUtil.validate(propertiesDataPath + "/" + xmlDataFile, xmlSchemaFile, collectAllErrors);
+    }
+
+    /**
+     * This function gets the bundle of properties and property options lists
+     * for the locale, loading it from the properties data path the first time
+     * it's needed. A bundle named strings for the fr_CA locale is made from
+     * strings.xml, then strings_fr.xml, then strings_fr_CA.xml, with what's
+     * in each file replacing what's in the ones before it, so each file only
+     * needs to have what's different for its locale. Files in the chain that
+     * don't exist are skipped, but at least one of them must exist.
+     * 
+     * Note that bundles are kept apart from the manager's own properties,
+     * and that they are never interpolated. Getting a bundle that's already
+     * loaded is cheap and never waits on other threads, so there's no need
+     * to hold on to it.
+     * 
+     * @param baseName The name of the bundle's files without the locale
+     * or .xml, like strings.
+     * 
+     * @param locale The locale to get the bundle for.
+     * 
+     * @return The bundle for the locale.
+     * 
+     * @throws InvalidXMLFileFormatException This is thrown if none of the
+     * bundle's files exist, or one of them is invalid.
+     */
+    public PropertiesBundle getBundle(String baseName, Locale locale)
+            throws InvalidXMLFileFormatException {
+        PropertiesBundle bundle = findBundle(baseName, locale);
+        if (bundle == null) {
+            throw new InvalidXMLFileFormatException(propertiesDataPath + "/" + getBundleName(baseName, locale) + BUNDLE_FILE_EXTENSION);
+        }
+        return bundle;
+    }
+
+    // GETS THE BUNDLE FOR THE LOCALE, LOADING IT IF NEEDED, OR RETURNS null
+    // IF NEITHER ITS FILE NOR THOSE OF ANY LESS SPECIFIC LOCALE EXIST. NOTE
+    // THAT IF TWO THREADS LOAD THE SAME BUNDLE AT ONCE THE FIRST ONE DONE
+    // WINS, AND BOTH GET THAT ONE
+    private PropertiesBundle findBundle(String baseName, Locale locale)
+            throws InvalidXMLFileFormatException {
+        String bundleName = getBundleName(baseName, locale);
+        PropertiesBundle bundle = bundles.get(bundleName);
+        if (bundle != null) {
+            return bundle;
+        }
+        Locale parentLocale = getParentLocale(locale);
+        PropertiesBundle parent = parentLocale == null ? null : findBundle(baseName, parentLocale);
+        String xmlDataFile = propertiesDataPath + "/" + bundleName + BUNDLE_FILE_EXTENSION;
+        if (Files.exists(Paths.get(xmlDataFile))) {
+            // THIS FILE ONLY HAS WHAT'S DIFFERENT FOR THIS LOCALE
+            HashMap<String, String> loadedProperties = new HashMap<>();
+            HashMap<String, PropertyOptionsList> loadedOptionsLists = new HashMap<>();
+            String xmlSchemaFile = getClass().getResource(PROPERTIES_SCHEMA_FILE_NAME).getPath();
+            readProperties(xmlDataFile, xmlSchemaFile, loadedProperties, loadedOptionsLists,
+                    new PropertySource(xmlDataFile), new PropertyProvenance());
+            if (parent != null) {
+                bundle = new PropertiesBundle(locale,
+                        flatten(parent.getProperties(), loadedProperties),
+                        flatten(parent.getPropertyOptionsLists(), loadedOptionsLists));
+            }
+            else {
+                bundle = new PropertiesBundle(locale, PropertyTable.of(loadedProperties), PropertyTable.of(loadedOptionsLists));
+            }
+        }
+        else if (parent != null) {
+            // NOTHING'S DIFFERENT, SO WE CAN SHARE THE LESS SPECIFIC TABLES
+            bundle = new PropertiesBundle(locale, parent.getProperties(), parent.getPropertyOptionsLists());
+        }
+        else {
+            return null;
+        }
+        PropertiesBundle loadedBundle = bundles.putIfAbsent(bundleName, bundle);
+        return loadedBundle == null ? bundle : loadedBundle;
+    }
+
+    // MAKES ONE TABLE WITH EVERYTHING IN inherited, EXCEPT WHAT'S REPLACED
+    // BY WHAT'S IN deltas. ONLY THE PARTS OF inherited WHERE deltas GO ARE
+    // COPIED, THE NEW TABLE SHARES EVERYTHING ELSE WITH IT
+    private static <T> PropertyTable<T> flatten(PropertyTable<T> inherited, HashMap<String, T> deltas) {
+        PropertyTable.Editor<T> flattened = inherited.edit();
+        for (Map.Entry<String, T> entry : deltas.entrySet()) {
+            flattened.put(entry.getKey(), entry.getValue());
+        }
+        return flattened.done();
+    }
+
+    // GETS THE FILE NAME, WITHOUT .xml, FOR THE LOCALE'S BUNDLE, LIKE
+    // strings_fr_CA, WHICH IS ALSO HOW WE KEEP TRACK OF LOADED BUNDLES
+    private static String getBundleName(String baseName, Locale locale) {
+        StringBuilder bundleName = new StringBuilder(baseName);
+        String language = locale.getLanguage();
+        String country = locale.getCountry();
+        String variant = locale.getVariant();
+        if (!language.isEmpty() || !country.isEmpty() || !variant.isEmpty()) {
+            bundleName.append('_').append(language);
+        }
+        if (!country.isEmpty() || !variant.isEmpty()) {
+            bundleName.append('_').append(country);
+        }
+        if (!variant.isEmpty()) {
+            bundleName.append('_').append(variant);
+        }
+        return bundleName.toString();
+    }
+
+    // GETS THE NEXT LESS SPECIFIC LOCALE, OR null FOR THE ROOT LOCALE
+    private static Locale getParentLocale(Locale locale) {
+        if (!locale.getVariant().isEmpty()) {
+            return new Locale(locale.getLanguage(), locale.getCountry());
+        }
+        if (!locale.getCountry().isEmpty()) {
+            return new Locale(locale.getLanguage());
+        }
+        if (!locale.getLanguage().isEmpty()) {
+            return Locale.ROOT;
+        }
+        return null;
+    }
+
+    // LOADS THE FILE USING THE DOM, PUTTING WHAT'S IN IT IN THE MAPS
+    // WE'RE GIVEN AND RECORDING ANYTHING FOUND TWICE IN loadedProvenance
+    private void readProperties(String xmlDataFile,
+                                String xmlSchemaFile,
+                                HashMap<String, String> loadedProperties,
+                                HashMap<String, PropertyOptionsList> loadedOptionsLists,
+                                PropertySource fileSource,
+                                PropertyProvenance loadedProvenance)
+            throws InvalidXMLFileFormatException {
         // FIRST LOAD THE FILE
         Document doc = xmlUtil.loadXMLDocument(xmlDataFile, xmlSchemaFile);
-        
+
         // NOW LOAD ALL THE PROPERTIES
         Node propertyListNode = xmlUtil.getNodeWithName(doc, PROPERTY_LIST_ELEMENT);
         ArrayList<Node> propNodes = xmlUtil.getChildNodesWithName(propertyListNode, PROPERTY_ELEMENT);
         for(Node n : propNodes)
         {
             NamedNodeMap attributes = n.getAttributes();
-            for (int i = 0; i < attributes.getLength(); i++)
-            {
-                Node att = attributes.getNamedItem(NAME_ATT);
-                String attName = attributes.getNamedItem(NAME_ATT).getTextContent();
-                String attValue = attributes.getNamedItem(VALUE_ATT).getTextContent();
-                properties.put(attName, attValue);
+            String attName = attributes.getNamedItem(NAME_ATT).getTextContent();
+            String attValue = attributes.getNamedItem(VALUE_ATT).getTextContent();
+            if (loadedProperties.put(attName, attValue) != null) {
+                loadedProvenance.addConflict(new PropertyConflict(attName, false, fileSource, fileSource));
             }
         }
         
@@ -267,18 +703,172 @@ public class PropertiesManager {
             {
                 NamedNodeMap attributes = n.getAttributes();
                 String name = attributes.getNamedItem(NAME_ATT).getNodeValue();
-                ArrayList<String> options = new ArrayList<>();
-                propertyOptionsLists.put(name, options);
                 ArrayList<Node> optionsNodes = xmlUtil.getChildNodesWithName(n, OPTION_ELEMENT);
-                for (Node oNode : optionsNodes)
+                String[] options = new String[optionsNodes.size()];
+                for (int i = 0; i < options.length; i++)
                 {
-                    String option = oNode.getTextContent();
-                    options.add(option);
+                    options[i] = optionsNodes.get(i).getTextContent();
                 }
+                loadedOptionsLists.put(name, new PropertyOptionsList(options));
+                loadedProvenance.addOptionsListSource(name, fileSource);
             }
         }
     }
 
+    // LOADS THE FILE IN LAZY MODE, RETURNING false IF IT'S NOT A FILE
+    // THAT CAN BE LOADED THAT WAY AND SO NOTHING WAS LOADED
+    private boolean loadPropertiesLazily(String xmlDataFile, String xmlSchemaFile)
+            throws InvalidXMLFileFormatException {
+        byte[] xml;
+        try {
+            xml = Files.readAllBytes(Paths.get(xmlDataFile));
+        }
+        catch (IOException ioe) {
+            throw new InvalidXMLFileFormatException(xmlDataFile);
+        }
+        if (!PropertiesFileScanner.canScan(xml)) {
+            return false;
+        }
+        
+        // THE SCANNER COUNTS ON THE FILE BEING VALID
+        ValidationResult result = xmlUtil.validate(xmlDataFile, xmlSchemaFile, false);
+        if (!result.isValid()) {
+            throw new InvalidXMLFileFormatException(result);
+        }
+        HashMap<String, LazyPropertyValue> loadedProperties = new HashMap<>();
+        HashMap<String, PropertyOptionsList> loadedOptionsLists = new HashMap<>();
+        PropertyProvenance loadedProvenance = new PropertyProvenance();
+        new PropertiesFileScanner(xml, xmlDataFile).scan(loadedProperties, loadedOptionsLists, loadedProvenance);
+        addAll(null, loadedProperties, loadedOptionsLists, null, loadedProvenance);
+        return true;
+    }
+
+    /**
+     * This function writes everything in this manager to the xmlDataFile
+     * in the same XML format loaded by loadProperties, replacing the file
+     * if it already exists. Like loadProperties, the file goes in the
+     * properties data path. Properties with references are written as
+     * they were added or loaded, see getRawProperty, so they'll be filled
+     * in again if the file is loaded with interpolation on.
+     * 
+     * @param xmlDataFile XML document to write.
+     * 
+     * @throws IOException This is thrown if the file can't be written,
+     * or if a property or option is null, since XML can't hold one. In
+     * that case the file is left as it was.
+     */
+    public void saveProperties(String xmlDataFile) throws IOException {
+        PropertiesState currentState = state;
+        PropertiesSerializer.checkXMLWritable(currentState);
+        try (FileChannel channel = openForWriting(xmlDataFile)) {
+            new PropertiesSerializer().writeXML(currentState, channel);
+        }
+    }
+
+    /**
+     * This function writes everything in this manager to the channel
+     * in the same XML format loaded by loadProperties. Note that this
+     * is streamed out as it goes, so no matter how many properties there
+     * are, only a small fixed amount of extra memory is needed. What's
+     * written is everything the manager had when this was called, changes
+     * made while it's writing aren't included. As with saveProperties,
+     * properties with references are written as they were added or loaded.
+     * 
+     * @param channel Where to write the XML.
+     * 
+     * @throws IOException This is thrown if the channel can't be written to,
+     * or if a property or option is null, since XML can't hold one. In
+     * that case nothing is written.
+     */
+    public void exportProperties(WritableByteChannel channel) throws IOException {
+        new PropertiesSerializer().writeXML(state, channel);
+    }
+
+    /**
+     * This function writes everything in this manager to the dataFile in
+     * a compact binary format that can be loaded by loadBinaryProperties,
+     * replacing the file if it already exists. The file goes in the
+     * properties data path. As with saveProperties, properties with
+     * references are written as they were added or loaded.
+     * 
+     * @param dataFile Binary file to write.
+     * 
+     * @throws IOException This is thrown if the file can't be written.
+     */
+    public void saveBinaryProperties(String dataFile) throws IOException {
+        try (FileChannel channel = openForWriting(dataFile)) {
+            exportBinaryProperties(channel);
+        }
+    }
+
+    /**
+     * This function writes everything in this manager to the channel
+     * in a compact binary format that can be read by importBinaryProperties.
+     * As with exportProperties, changes made while it's writing aren't
+     * included. Unlike XML, null properties and options are kept.
+     * 
+     * @param channel Where to write the data.
+     * 
+     * @throws IOException This is thrown if the channel can't be written to.
+     */
+    public void exportBinaryProperties(WritableByteChannel channel) throws IOException {
+        new PropertiesSerializer().writeBinary(state, channel);
+    }
+
+    /**
+     * This function loads a file written by saveBinaryProperties from the
+     * properties data path. As with loadProperties, what's loaded replaces
+     * properties and options lists of the same name.
+     * 
+     * @param dataFile Binary file to load.
+     * 
+     * @throws IOException This is thrown if the file can't be read or
+     * was not written by saveBinaryProperties.
+     */
+    public void loadBinaryProperties(String dataFile) throws IOException {
+        Path dataFilePath = Paths.get(propertiesDataPath, dataFile);
+        try (FileChannel channel = FileChannel.open(dataFilePath)) {
+            importBinaryProperties(channel, new PropertySource(dataFilePath.toString()));
+        }
+    }
+
+    /**
+     * This function reads data written by exportBinaryProperties from the
+     * channel. As with loadProperties, what's read replaces properties and
+     * options lists of the same name.
+     * 
+     * @param channel Where to read the data from.
+     * 
+     * @throws IOException This is thrown if the channel can't be read or
+     * does not contain data written by exportBinaryProperties.
+     */
+    public void importBinaryProperties(ReadableByteChannel channel) throws IOException {
+        importBinaryProperties(channel, null);
+    }
+
+    // READS BINARY DATA, RECORDING IT AS COMING FROM source IF IT'S NOT null
+    private void importBinaryProperties(ReadableByteChannel channel, PropertySource source) throws IOException {
+        HashMap<String, String> importedProperties = new HashMap<>();
+        HashMap<String, PropertyOptionsList> importedOptionsLists = new HashMap<>();
+        new PropertiesSerializer().readBinary(channel, importedProperties, importedOptionsLists);
+        PropertyProvenance importedProvenance = null;
+        if (source != null) {
+            importedProvenance = new PropertyProvenance();
+            for (String name : importedOptionsLists.keySet()) {
+                importedProvenance.addOptionsListSource(name, source);
+            }
+        }
+        addAll(importedProperties, null, importedOptionsLists, source, importedProvenance);
+    }
+
+    // OPENS A FILE IN THE DATA PATH, MAKING IT EMPTY IF IT ALREADY EXISTS
+    private FileChannel openForWriting(String dataFile) throws IOException {
+        return FileChannel.open(Paths.get(propertiesDataPath, dataFile),
+                StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
     /**
      * This function removes the propertyToRemove property
      * from the manager. Accessing it afterwards will return
@@ -287,8 +877,19 @@ public class PropertiesManager {
      * @param propertyToRemove The property to remove from
      * the manager.
      */
-    public void removeProperty(Object propertyToRemove) {
-        this.properties.remove(propertyToRemove);
+    public synchronized void removeProperty(Object propertyToRemove) {
+        String key = propertyToRemove.toString();
+        PropertiesState current = state;
+        PropertyTable.Editor<String> newProperties = current.properties.edit();
+        PropertyTable.Editor<LazyPropertyValue> newLazyProperties = current.lazyProperties.edit();
+        newProperties.remove(key);
+        newLazyProperties.remove(key);
+        provenance.removePropertySource(key);
+        if (interpolator.isInvolved(key)) {
+            interpolator.removeTemplate(key);
+            interpolator.resolve(Collections.singleton(key), newProperties, newLazyProperties);
+        }
+        publish(newProperties.done(), newLazyProperties.done(), current.propertyOptionsLists);
     }
     
     /**
@@ -299,7 +900,283 @@ public class PropertiesManager {
      * @param propertyToRemove The property list to remove from
      * the manager.
      */    
-    public void removePropertyOptionsList(Object propertyOptionsListToRemove) {
-        this.propertyOptionsLists.remove(propertyOptionsListToRemove);
+    public synchronized void removePropertyOptionsList(Object propertyOptionsListToRemove) {
+        String key = propertyOptionsListToRemove.toString();
+        PropertiesState current = state;
+        publish(current.properties, current.lazyProperties, current.propertyOptionsLists.remove(key));
+        provenance.removeOptionsListSource(key);
+    }
+
+    // ADDS EVERYTHING LOADED FROM A FILE AS A SINGLE CHANGE, EITHER
+    // newProperties OR newLazyProperties MAY BE null. newPropertiesSource IS
+    // WHERE ALL OF newProperties CAME FROM AND newProvenance HAS WHERE THE
+    // OPTIONS LISTS CAME FROM, BOTH ARE null IF WE DON'T KNOW. NOTE THAT
+    // CONFLICTS ARE FOUND AS THINGS ARE REPLACED, SO THEY COST NOTHING EXTRA
+    private synchronized void addAll(   HashMap<String, String> newProperties,
+                                        HashMap<String, LazyPropertyValue> newLazyProperties,
+                                        HashMap<String, PropertyOptionsList> newOptionsLists,
+                                        PropertySource newPropertiesSource,
+                                        PropertyProvenance newProvenance) {
+        PropertiesState current = state;
+        PropertyTable.Editor<String> properties = current.properties.edit();
+        PropertyTable.Editor<LazyPropertyValue> lazyProperties = current.lazyProperties.edit();
+        PropertyTable.Editor<PropertyOptionsList> propertyOptionsLists = current.propertyOptionsLists.edit();
+        if (newProvenance != null) {
+            provenance.addConflicts(newProvenance);
+        }
+        if (newProperties != null) {
+            for (Map.Entry<String, String> entry : newProperties.entrySet()) {
+                String name = entry.getKey();
+                String overriddenValue = properties.put(name, entry.getValue());
+                boolean replaced = overriddenValue != null;
+                PropertySource overriddenSource = provenance.putPropertySource(name, newPropertiesSource);
+                if (!lazyProperties.isEmpty()) {
+                    LazyPropertyValue overriddenLazyValue = lazyProperties.remove(name);
+                    if (overriddenLazyValue != null) {
+                        replaced = true;
+                        overriddenSource = overriddenLazyValue.getSource();
+                    }
+                }
+                if (replaced && newPropertiesSource != null
+                        && !isReload(name, overriddenValue, overriddenSource, entry.getValue(), newPropertiesSource)) {
+                    provenance.addConflict(new PropertyConflict(name, false, overriddenSource, newPropertiesSource));
+                }
+            }
+        }
+        if (newLazyProperties != null) {
+            for (Map.Entry<String, LazyPropertyValue> entry : newLazyProperties.entrySet()) {
+                String name = entry.getKey();
+                LazyPropertyValue value = entry.getValue();
+                LazyPropertyValue overriddenValue = lazyProperties.put(name, value);
+                if (overriddenValue != null) {
+                    if (!value.isReloadOf(overriddenValue)) {
+                        provenance.addConflict(new PropertyConflict(name, false, overriddenValue.getSource(), value.getSource()));
+                    }
+                }
+                else if (!properties.isEmpty() && properties.remove(name) != null) {
+                    PropertySource overriddenSource = provenance.removePropertySource(name);
+                    provenance.addConflict(new PropertyConflict(name, false, overriddenSource, value.getSource()));
+                }
+            }
+        }
+        if (newProvenance != null) {
+            provenance.addOptionsListSources(newProvenance, newOptionsLists, current.propertyOptionsLists);
+        }
+        else {
+            for (String name : newOptionsLists.keySet()) {
+                provenance.removeOptionsListSource(name);
+            }
+        }
+        for (Map.Entry<String, PropertyOptionsList> entry : newOptionsLists.entrySet()) {
+            propertyOptionsLists.put(entry.getKey(), entry.getValue());
+        }
+        if (interpolating || !interpolator.isEmpty()) {
+            interpolateAll(newProperties, newLazyProperties, Collections.<String>emptySet(), properties, lazyProperties);
+        }
+        publish(properties.done(), lazyProperties.done(), propertyOptionsLists.done());
+    }
+
+    // TESTS TO SEE IF A PROPERTY WAS REPLACED BY THE SAME VALUE FROM THE SAME
+    // PLACE, LIKE WHEN A FILE IS RELOADED, WHICH ISN'T WORTH CALLING A
+    // CONFLICT. NOTE THAT IF IT HAD REFERENCES, WHAT WAS WRITTEN IS COMPARED
+    private boolean isReload(   String name,
+                                String overriddenValue,
+                                PropertySource overriddenSource,
+                                String value,
+                                PropertySource source) {
+        if (!source.equals(overriddenSource)) {
+            return false;
+        }
+        String overriddenTemplate = interpolator.getTemplate(name);
+        return Objects.equals(value, overriddenTemplate != null ? overriddenTemplate : overriddenValue);
+    }
+
+    // FILLS IN THE REFERENCES IN THE VALUE JUST GIVEN TO key, AND IN THE
+    // VALUES OF PROPERTIES THAT REFER TO IT
+    private void interpolate(   String key,
+                                String value,
+                                PropertyTable.Editor<String> properties,
+                                PropertyTable.Editor<LazyPropertyValue> lazyProperties) {
+        String[] parts = interpolating && value != null ? PropertyInterpolator.parse(value) : null;
+        if (parts != null) {
+            interpolator.putTemplate(key, parts);
+        }
+        else if (interpolator.isInvolved(key)) {
+            interpolator.removeTemplate(key);
+        }
+        else {
+            return;
+        }
+        interpolator.resolve(Collections.singleton(key), properties, lazyProperties);
+    }
+
+    // DOES WHAT interpolate DOES FOR EVERYTHING JUST ADDED OR REMOVED FROM
+    // targetProperties AND targetLazyProperties, WHICH AREN'T PUBLISHED YET.
+    // NOTE THAT LAZY VALUES WITH REFERENCES HAVE TO BE DECODED, AND ARE
+    // THEN MOVED TO targetProperties SINCE IT WILL HOLD THE FILLED IN VALUES
+    private void interpolateAll( HashMap<String, String> newProperties,
+                                 HashMap<String, LazyPropertyValue> newLazyProperties,
+                                 Collection<String> removedNames,
+                                 PropertyTable.Editor<String> targetProperties,
+                                 PropertyTable.Editor<LazyPropertyValue> targetLazyProperties) {
+        ArrayList<String> changedNames = new ArrayList<>();
+        for (String name : removedNames) {
+            if (interpolator.isInvolved(name)) {
+                interpolator.removeTemplate(name);
+                changedNames.add(name);
+            }
+        }
+        if (newProperties != null) {
+            for (Map.Entry<String, String> entry : newProperties.entrySet()) {
+                String name = entry.getKey();
+                String[] parts = interpolating && entry.getValue() != null
+                        ? PropertyInterpolator.parse(entry.getValue()) : null;
+                if (parts != null) {
+                    interpolator.putTemplate(name, parts);
+                }
+                else {
+                    interpolator.removeTemplate(name);
+                }
+                if (interpolator.isInvolved(name)) {
+                    changedNames.add(name);
+                }
+            }
+        }
+        if (newLazyProperties != null) {
+            for (Map.Entry<String, LazyPropertyValue> entry : newLazyProperties.entrySet()) {
+                String name = entry.getKey();
+                LazyPropertyValue value = entry.getValue();
+                String[] parts = interpolating && value.mayHaveReferences()
+                        ? PropertyInterpolator.parse(value.getValue()) : null;
+                if (parts != null) {
+                    targetLazyProperties.remove(name);
+                    targetProperties.put(name, value.getValue());
+                    provenance.putPropertySource(name, value.getSource());
+                    interpolator.putTemplate(name, parts);
+                }
+                else {
+                    interpolator.removeTemplate(name);
+                }
+                if (interpolator.isInvolved(name)) {
+                    changedNames.add(name);
+                }
+            }
+        }
+        if (!changedNames.isEmpty()) {
+            interpolator.resolve(changedNames, targetProperties, targetLazyProperties);
+        }
+    }
+
+    /**
+     * This function applies all the changes in the batch to the manager at
+     * once, which is much faster than making them one at a time when there
+     * are many. All the changes are made to new tables that share what they
+     * can with the manager's current ones, and then those replace everything
+     * the manager has in a single step, so other threads see either none of
+     * the changes or all of them. Note that adding or removing properties
+     * this way is otherwise just like doing it with addProperty and
+     * removeProperty.
+     * 
+     * @param batch The changes to make.
+     */
+    public synchronized void applyBatch(PropertiesBatch batch) {
+        int numPropertyChanges = batch.getNumPropertyChanges();
+        HashMap<String, PropertyOptionsList> batchOptionsLists = batch.getPropertyOptionsLists();
+        HashSet<String> removedOptionsLists = batch.getRemovedPropertyOptionsLists();
+        PropertiesState current = state;
+        
+        // ALL THE CHANGES ARE MADE TO EDITORS, NOTHING IS SEEN UNTIL THE END
+        PropertyTable.Editor<String> newProperties = current.properties.edit();
+        PropertyTable.Editor<LazyPropertyValue> newLazyProperties = current.lazyProperties.edit();
+        for (int i = 0; i < numPropertyChanges; i++) {
+            String name = batch.getPropertyKey(i);
+            if (batch.isPropertyRemoval(i)) {
+                newProperties.remove(name);
+            }
+            else {
+                newProperties.put(name, batch.getPropertyValue(i));
+            }
+            if (!newLazyProperties.isEmpty()) {
+                newLazyProperties.remove(name);
+            }
+        }
+        PropertyTable.Editor<PropertyOptionsList> newOptionsLists = current.propertyOptionsLists.edit();
+        for (Map.Entry<String, PropertyOptionsList> entry : batchOptionsLists.entrySet()) {
+            newOptionsLists.put(entry.getKey(), entry.getValue());
+        }
+        for (String name : removedOptionsLists) {
+            newOptionsLists.remove(name);
+        }
+        
+        // NOTHING IN THE BATCH WAS LOADED FROM A FILE
+        for (int i = 0; i < numPropertyChanges; i++) {
+            provenance.removePropertySource(batch.getPropertyKey(i));
+        }
+        for (String name : batchOptionsLists.keySet()) {
+            provenance.removeOptionsListSource(name);
+        }
+        for (String name : removedOptionsLists) {
+            provenance.removeOptionsListSource(name);
+        }
+        
+        // FOR INTERPOLATION WE NEED TO KNOW HOW EACH PROPERTY ENDED UP
+        if (interpolating || !interpolator.isEmpty()) {
+            HashMap<String, String> addedProperties = new HashMap<>();
+            HashSet<String> removedProperties = new HashSet<>();
+            for (int i = 0; i < numPropertyChanges; i++) {
+                String name = batch.getPropertyKey(i);
+                if (batch.isPropertyRemoval(i)) {
+                    addedProperties.remove(name);
+                    removedProperties.add(name);
+                }
+                else {
+                    addedProperties.put(name, batch.getPropertyValue(i));
+                    removedProperties.remove(name);
+                }
+            }
+            interpolateAll(addedProperties, null, removedProperties, newProperties, newLazyProperties);
+        }
+        
+        // AND NOW EVERYONE GETS TO SEE ALL OF IT AT ONCE
+        publish(newProperties.done(), newLazyProperties.done(), newOptionsLists.done());
+    }
+
+    // LOOKS UP A PROPERTY THAT MAY HAVE BEEN LOADED EITHER WAY, THIS
+    // IS SHARED WITH PropertiesState
+    static String lookUpProperty(   PropertyTable<String> properties,
+                                    PropertyTable<LazyPropertyValue> lazyProperties,
+                                    String key) {
+        String value = properties.get(key);
+        if (value == null && !lazyProperties.isEmpty()) {
+            LazyPropertyValue lazyValue = lazyProperties.get(key);
+            if (lazyValue != null) {
+                value = lazyValue.getValue();
+            }
+        }
+        return value;
+    }
+
+    // THE SAME FOR TABLES STILL BEING CHANGED, FOR PropertyInterpolator
+    static String lookUpProperty(   PropertyTable.Editor<String> properties,
+                                    PropertyTable.Editor<LazyPropertyValue> lazyProperties,
+                                    String key) {
+        String value = properties.get(key);
+        if (value == null && !lazyProperties.isEmpty()) {
+            LazyPropertyValue lazyValue = lazyProperties.get(key);
+            if (lazyValue != null) {
+                value = lazyValue.getValue();
+            }
+        }
+        return value;
+    }
+
+    // REPLACES EVERYTHING WE HAVE WITH THE NEW TABLES AS A NEW VERSION.
+    // THIS IS HOW EVERY CHANGE IS MADE, AND IT MUST ONLY BE DONE WHILE
+    // SYNCHRONIZED. SINCE IT'S ONE WRITE, NO THREAD SEES PART OF A CHANGE
+    private void publish(   PropertyTable<String> newProperties,
+                            PropertyTable<LazyPropertyValue> newLazyProperties,
+                            PropertyTable<PropertyOptionsList> newOptionsLists) {
+        state = new PropertiesState(state.version + 1, newProperties, newLazyProperties, newOptionsLists,
+                interpolator.getTemplates());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,465 @@
+package properties_manager;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import static properties_manager.PropertiesManager.NAME_ATT;
+import static properties_manager.PropertiesManager.OPTION_ELEMENT;
+import static properties_manager.PropertiesManager.PROPERTY_ELEMENT;
+import static properties_manager.PropertiesManager.PROPERTY_LIST_ELEMENT;
+import static properties_manager.PropertiesManager.PROPERTY_OPTIONS_ELEMENT;
+import static properties_manager.PropertiesManager.PROPERTY_OPTIONS_LIST_ELEMENT;
+import static properties_manager.PropertiesManager.VALUE_ATT;
+
+/**
+ * PropertiesSerializer.java
+ *
+ * This class writes the contents of the properties manager out to a
+ * channel, either in the same XML format that loadProperties reads or
+ * in a more compact binary format, and reads the binary format back in.
+ *
+ * Note that no DOM is built when writing. Everything is encoded straight
+ * into one fixed size buffer that is written to the channel each time it
+ * fills up, so the extra memory used doesn't depend on how many properties
+ * are being written.
+ *
+ * @author THE McKilla Gorilla (accept no imposters)
+ * @version 2.0
+ */
+class PropertiesSerializer {
+    // THE BINARY FORMAT STARTS WITH THESE SO WE CAN RECOGNIZE IT. VERSION 2
+    // ADDED null STRINGS, SO VERSION 1 DATA CAN STILL BE READ
+    public static final int BINARY_MAGIC_NUMBER = 0x504D4250;
+    public static final byte BINARY_FORMAT_VERSION = 2;
+    public static final byte OLDEST_BINARY_FORMAT_VERSION = 1;
+
+    // A null STRING IS WRITTEN AS THIS LENGTH WITH NO BYTES AFTER IT
+    public static final int NULL_STRING_LENGTH = -1;
+
+    // THE MOST BYTES A STRING CAN TAKE, THE LARGEST ARRAY WE CAN COUNT ON
+    // BEING ABLE TO MAKE
+    public static final int MAX_STRING_LENGTH = Integer.MAX_VALUE - 8;
+
+    // EVERY RECORD IN THE BINARY FORMAT STARTS WITH ONE OF THESE
+    public static final byte END_RECORD         = 0;
+    public static final byte PROPERTY_RECORD    = 1;
+    public static final byte OPTIONS_RECORD     = 2;
+
+    // HOW MUCH WE ENCODE BEFORE WRITING TO THE CHANNEL
+    public static final int BUFFER_SIZE = 8192;
+
+    // THE TEXT WE WRAP AROUND EVERYTHING IN THE XML FORMAT
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+    private static final String INDENT = "    ";
+
+    // ALL BYTES GO THROUGH THIS ON THEIR WAY TO OR FROM THE CHANNEL
+    private ByteBuffer buffer;
+
+    // USED FOR TURNING ALL OUR TEXT INTO UTF-8
+    private CharsetEncoder encoder;
+
+    /**
+     * Constructor for making a serializer, note that a serializer
+     * should only be used by one thread at a time.
+     */
+    public PropertiesSerializer() {
+        buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+
+    /**
+     * This method writes the properties and options lists to the channel
+     * in the XML format described by properties_schema.xsd. Note that the
+     * schema requires at least one property and one options list, so
+     * output without any of either will not validate. XML has no way to
+     * write a null, so if any value or option is null nothing is written.
+     *
+     * @param state The properties and options lists to write.
+     *
+     * @param channel Where to write the XML.
+     *
+     * @throws IOException Thrown if the channel can't be written to or
+     * if some text contains characters that XML can't represent or is null.
+     */
+    public void writeXML(PropertiesState state, WritableByteChannel channel) throws IOException {
+        // CHECK FOR nullS FIRST SO WE DON'T LEAVE HALF A FILE
+        checkXMLWritable(state);
+        ((Buffer)buffer).clear();
+        writeText(XML_DECLARATION, channel);
+        writeText("<properties>\n", channel);
+
+        // FIRST ALL THE PROPERTIES
+        writeText(INDENT + "<" + PROPERTY_LIST_ELEMENT + ">\n", channel);
+        for (Map.Entry<String, String> entry : state.properties) {
+            writeXMLProperty(entry.getKey(), getRawValue(state, entry), channel);
+        }
+        for (Map.Entry<String, LazyPropertyValue> entry : state.lazyProperties) {
+            writeXMLProperty(entry.getKey(), entry.getValue().peekValue(), channel);
+        }
+        writeText(INDENT + "</" + PROPERTY_LIST_ELEMENT + ">\n", channel);
+
+        // THEN ALL THE OPTIONS LISTS
+        writeText(INDENT + "<" + PROPERTY_OPTIONS_LIST_ELEMENT + ">\n", channel);
+        for (Map.Entry<String, PropertyOptionsList> entry : state.propertyOptionsLists) {
+            writeText(INDENT + INDENT + "<" + PROPERTY_OPTIONS_ELEMENT + " " + NAME_ATT + "=\"", channel);
+            writeEscaped(entry.getKey(), true, channel);
+            writeText("\">\n", channel);
+            PropertyOptionsList options = entry.getValue();
+            for (int i = 0; i < options.size(); i++) {
+                writeText(INDENT + INDENT + INDENT + "<" + OPTION_ELEMENT + ">", channel);
+                writeEscaped(options.get(i), false, channel);
+                writeText("</" + OPTION_ELEMENT + ">\n", channel);
+            }
+            writeText(INDENT + INDENT + "</" + PROPERTY_OPTIONS_ELEMENT + ">\n", channel);
+        }
+        writeText(INDENT + "</" + PROPERTY_OPTIONS_LIST_ELEMENT + ">\n", channel);
+        writeText("</properties>\n", channel);
+        flush(channel);
+    }
+
+    /**
+     * This method checks that everything in the state can be written as
+     * XML, which has no way to write a null.
+     *
+     * @param state What is to be written.
+     *
+     * @throws IOException Thrown if a property value or an option is null.
+     */
+    static void checkXMLWritable(PropertiesState state) throws IOException {
+        for (Map.Entry<String, String> entry : state.properties) {
+            if (entry.getValue() == null) {
+                throw new IOException("Property " + entry.getKey() + " has a null value, which can't be written as XML");
+            }
+        }
+        for (Map.Entry<String, PropertyOptionsList> entry : state.propertyOptionsLists) {
+            if (entry.getValue().contains(null)) {
+                throw new IOException("Property options list " + entry.getKey() + " has a null option, which can't be written as XML");
+            }
+        }
+    }
+
+    /**
+     * This method writes the properties and options lists to the channel
+     * in the compact binary format, which can be read back in using
+     * readBinary. Strings are written as their UTF-8 byte length followed
+     * by the UTF-8 bytes, and null values and options as NULL_STRING_LENGTH.
+     *
+     * @param state The properties and options lists to write.
+     *
+     * @param channel Where to write the data.
+     *
+     * @throws IOException Thrown if the channel can't be written to.
+     */
+    public void writeBinary(PropertiesState state, WritableByteChannel channel) throws IOException {
+        ((Buffer)buffer).clear();
+        ensureRoom(5, channel);
+        buffer.putInt(BINARY_MAGIC_NUMBER);
+        buffer.put(BINARY_FORMAT_VERSION);
+        for (Map.Entry<String, String> entry : state.properties) {
+            writeBinaryProperty(entry.getKey(), getRawValue(state, entry), channel);
+        }
+        for (Map.Entry<String, LazyPropertyValue> entry : state.lazyProperties) {
+            writeBinaryProperty(entry.getKey(), entry.getValue().peekValue(), channel);
+        }
+        for (Map.Entry<String, PropertyOptionsList> entry : state.propertyOptionsLists) {
+            PropertyOptionsList options = entry.getValue();
+            ensureRoom(1, channel);
+            buffer.put(OPTIONS_RECORD);
+            writeBinaryString(entry.getKey(), channel);
+            ensureRoom(4, channel);
+            buffer.putInt(options.size());
+            for (int i = 0; i < options.size(); i++) {
+                writeBinaryString(options.get(i), channel);
+            }
+        }
+        ensureRoom(1, channel);
+        buffer.put(END_RECORD);
+        flush(channel);
+    }
+
+    /**
+     * This method reads data written by writeBinary from the channel and
+     * puts everything it finds into the maps, replacing any properties
+     * or options lists with the same names.
+     *
+     * @param channel Where to read the data from.
+     *
+     * @param properties Where to put the (name, value) pairs read.
+     *
+     * @param propertyOptionsLists Where to put the options lists read.
+     *
+     * @throws IOException Thrown if the channel can't be read from or
+     * if it doesn't contain data in the binary format, including when a
+     * length in the data is more than what's left to read.
+     */
+    public void readBinary( ReadableByteChannel channel,
+                            Map<String, String> properties,
+                            Map<String, PropertyOptionsList> propertyOptionsLists) throws IOException {
+        // START WITH AN EMPTY BUFFER READY FOR READING
+        ((Buffer)buffer).clear();
+        ((Buffer)buffer).flip();
+        fill(5, channel);
+        if (buffer.getInt() != BINARY_MAGIC_NUMBER) {
+            throw new IOException("Not a binary properties file");
+        }
+        byte version = buffer.get();
+        if (version < OLDEST_BINARY_FORMAT_VERSION || version > BINARY_FORMAT_VERSION) {
+            throw new IOException("Unsupported binary properties version: " + version);
+        }
+        while (true) {
+            fill(1, channel);
+            byte record = buffer.get();
+            if (record == END_RECORD) {
+                return;
+            }
+            else if (record == PROPERTY_RECORD) {
+                String name = readName(channel);
+                properties.put(name, readBinaryString(channel));
+            }
+            else if (record == OPTIONS_RECORD) {
+                String name = readName(channel);
+                fill(4, channel);
+                int numOptions = buffer.getInt();
+                
+                // EVERY OPTION TAKES AT LEAST ITS LENGTH, SO WE CAN TELL A
+                // BAD SIZE BEFORE MAKING ROOM FOR IT
+                checkLength(numOptions, 4, "options list size", channel);
+                ArrayList<String> options = new ArrayList<>(Math.min(numOptions, BUFFER_SIZE));
+                for (int i = 0; i < numOptions; i++) {
+                    options.add(readBinaryString(channel));
+                }
+                propertyOptionsLists.put(name, new PropertyOptionsList(options));
+            }
+            else {
+                throw new IOException("Unknown binary properties record: " + record);
+            }
+        }
+    }
+
+    // HELPER METHODS FOR WRITING
+
+    // PROPERTIES WITH REFERENCES ARE WRITTEN AS THEY WERE WRITTEN, NOT FILLED
+    // IN, SO THAT THEIR REFERENCES AREN'T LOST WHEN THEY'RE READ BACK
+    private static String getRawValue(PropertiesState state, Map.Entry<String, String> entry) {
+        if (state.rawProperties.isEmpty()) {
+            return entry.getValue();
+        }
+        String rawValue = state.rawProperties.get(entry.getKey());
+        return rawValue != null ? rawValue : entry.getValue();
+    }
+
+    private void writeXMLProperty(String name, String value, WritableByteChannel channel) throws IOException {
+        writeText(INDENT + INDENT + "<" + PROPERTY_ELEMENT + " " + NAME_ATT + "=\"", channel);
+        writeEscaped(name, true, channel);
+        writeText("\" " + VALUE_ATT + "=\"", channel);
+        writeEscaped(value, true, channel);
+        writeText("\"></" + PROPERTY_ELEMENT + ">\n", channel);
+    }
+
+    private void writeBinaryProperty(String name, String value, WritableByteChannel channel) throws IOException {
+        ensureRoom(1, channel);
+        buffer.put(PROPERTY_RECORD);
+        writeBinaryString(name, channel);
+        writeBinaryString(value, channel);
+    }
+
+    private void writeText(String text, WritableByteChannel channel) throws IOException {
+        encode(CharBuffer.wrap(text), channel);
+    }
+
+    // WRITES text WITH ANYTHING XML WOULD MISREAD REPLACED BY AN ENTITY OR
+    // CHARACTER REFERENCE, NOTE THAT IN ATTRIBUTES WHITESPACE HAS TO BE
+    // ESCAPED TOO OR THE PARSER WILL NORMALIZE IT INTO SPACES
+    private void writeEscaped(String text, boolean isAttribute, WritableByteChannel channel) throws IOException {
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String escape;
+            if (c == '&')                       escape = "&amp;";
+            else if (c == '<')                  escape = "&lt;";
+            else if (c == '>')                  escape = "&gt;";
+            else if (c == '"' && isAttribute)   escape = "&quot;";
+            else if (c == '\r')                 escape = "&#13;";
+            else if (c == '\n' && isAttribute)  escape = "&#10;";
+            else if (c == '\t' && isAttribute)  escape = "&#9;";
+            else if (c < 0x20 && c != '\n' && c != '\t') {
+                throw new IOException("Character 0x" + Integer.toHexString(c) + " cannot be written as XML");
+            }
+            else {
+                continue;
+            }
+            if (i > start) {
+                encode(CharBuffer.wrap(text, start, i), channel);
+            }
+            writeText(escape, channel);
+            start = i + 1;
+        }
+        if (start < text.length()) {
+            encode(CharBuffer.wrap(text, start, text.length()), channel);
+        }
+    }
+
+    private void writeBinaryString(String text, WritableByteChannel channel) throws IOException {
+        ensureRoom(4, channel);
+        if (text == null) {
+            buffer.putInt(NULL_STRING_LENGTH);
+            return;
+        }
+        buffer.putInt(getUTF8Length(text));
+        encode(CharBuffer.wrap(text), channel);
+    }
+
+    // ENCODES THE CHARACTERS INTO THE BUFFER, WRITING IT OUT EACH TIME IT FILLS
+    private void encode(CharBuffer chars, WritableByteChannel channel) throws IOException {
+        encoder.reset();
+        CoderResult result = encoder.encode(chars, buffer, true);
+        while (true) {
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (result.isUnderflow()) {
+                result = encoder.flush(buffer);
+                if (result.isUnderflow()) {
+                    return;
+                }
+            }
+            else {
+                flush(channel);
+                result = encoder.encode(chars, buffer, true);
+            }
+        }
+    }
+
+    private void ensureRoom(int numBytes, WritableByteChannel channel) throws IOException {
+        if (buffer.remaining() < numBytes) {
+            flush(channel);
+        }
+    }
+
+    private void flush(WritableByteChannel channel) throws IOException {
+        ((Buffer)buffer).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        ((Buffer)buffer).clear();
+    }
+
+    // COUNTS THE BYTES text WILL TAKE AS UTF-8 WITHOUT ENCODING IT
+    private static int getUTF8Length(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            }
+            else if (c < 0x800) {
+                length += 2;
+            }
+            else if (Character.isHighSurrogate(c)
+                    && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            }
+            else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    // HELPER METHODS FOR READING
+
+    // MAKES SURE AT LEAST numBytes ARE IN THE BUFFER READY TO BE READ
+    private void fill(int numBytes, ReadableByteChannel channel) throws IOException {
+        if (buffer.remaining() >= numBytes) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < numBytes) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Binary properties data ended unexpectedly");
+            }
+        }
+        ((Buffer)buffer).flip();
+    }
+
+    // READS THE NAME OF A PROPERTY OR OPTIONS LIST, WHICH CAN'T BE null
+    private String readName(ReadableByteChannel channel) throws IOException {
+        String name = readBinaryString(channel);
+        if (name == null) {
+            throw new IOException("Binary properties data has a null name");
+        }
+        return name;
+    }
+
+    // MAKES SURE A LENGTH READ FROM THE DATA IS ONE WE CAN BELIEVE, THAT IS,
+    // NOT NEGATIVE, NOT MORE THAN MAX_STRING_LENGTH, AND FOR CHANNELS THAT
+    // KNOW THEIR SIZE, NOT MORE THAN WHAT'S LEFT, GIVEN EACH OF length
+    // THINGS TAKES AT LEAST bytesEach BYTES
+    private void checkLength(int length, int bytesEach, String what, ReadableByteChannel channel) throws IOException {
+        if (length < 0 || length > MAX_STRING_LENGTH) {
+            throw new IOException("Invalid " + what + ": " + length);
+        }
+        if (channel instanceof SeekableByteChannel) {
+            SeekableByteChannel seekableChannel = (SeekableByteChannel)channel;
+            long bytesLeft = seekableChannel.size() - seekableChannel.position() + buffer.remaining();
+            if ((long)length * bytesEach > bytesLeft) {
+                throw new IOException("Invalid " + what + ": " + length + ", only " + bytesLeft + " bytes are left");
+            }
+        }
+    }
+
+    private String readBinaryString(ReadableByteChannel channel) throws IOException {
+        fill(4, channel);
+        int length = buffer.getInt();
+        if (length == NULL_STRING_LENGTH) {
+            return null;
+        }
+        checkLength(length, 1, "string length", channel);
+        if (length <= buffer.capacity()) {
+            fill(length, channel);
+            String text;
+            if (buffer.hasArray()) {
+                text = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+                ((Buffer)buffer).position(buffer.position() + length);
+            }
+            else {
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                text = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return text;
+        }
+
+        // IT WON'T FIT IN THE BUFFER SO READ IT IN PIECES. THE ARRAY ONLY
+        // GROWS AS THE BYTES ARRIVE, SO IF THE LENGTH IS WRONG WE FIND THE
+        // DATA ISN'T THERE BEFORE MAKING ANYTHING MUCH BIGGER THAN THE DATA
+        byte[] bytes = new byte[Math.min(length, 2 * buffer.capacity())];
+        int numRead = 0;
+        while (numRead < length) {
+            fill(1, channel);
+            if (numRead == bytes.length) {
+                bytes = Arrays.copyOf(bytes, (int)Math.min(length, 2L * bytes.length));
+            }
+            int numToCopy = Math.min(buffer.remaining(), bytes.length - numRead);
+            buffer.get(bytes, numRead, numToCopy);
+            numRead += numToCopy;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,161 @@
+package properties_manager;
+
+import java.util.ArrayList;
+
+/**
+ * PropertiesSnapshot.java
+ *
+ * This class is an unchanging, point-in-time view of everything in the
+ * properties manager. Code that needs to read many properties and needs
+ * them all to be consistent with one another, like a request handler,
+ * should get a snapshot from the manager and do all its reading from
+ * that, since properties may be loaded, added, or removed by other
+ * threads in the meantime.
+ *
+ * Getting a snapshot costs the same no matter how many properties there
+ * are, since the manager never changes its data in place, it replaces it,
+ * so the snapshot just keeps what the manager had when it was taken. Nor
+ * does it make later changes cost any more. Once a snapshot is no longer
+ * needed it should be released, after which it can no longer be read from.
+ *
+ * @author THE McKilla Gorilla (accept no imposters)
+ * @version 2.0
+ */
+public final class PropertiesSnapshot {
+    // EVERY CHANGE TO THE MANAGER GETS A NEW VERSION
+    private final long version;
+
+    // WHAT THE MANAGER HAD, WHICH NEVER CHANGES, OR null ONCE RELEASED
+    private PropertiesState state;
+
+    /**
+     * Only the properties manager makes snapshots, of its current state.
+     */
+    PropertiesSnapshot(PropertiesState initState) {
+        version = initState.version;
+        state = initState;
+    }
+
+    /**
+     * Accessor method for the version of the manager's contents this
+     * snapshot was taken of. Snapshots with the same version have the
+     * same contents, and later versions have larger numbers.
+     *
+     * @return The version of this snapshot.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Accessor method for getting a property from this snapshot.
+     *
+     * @param property The key for getting a property.
+     *
+     * @return The value associated with the key.
+     */
+    public String getProperty(Object property) {
+        return getState().getProperty(property.toString());
+    }
+
+    /**
+     * Accessor method for testing to see if a particular
+     * property is in this snapshot.
+     *
+     * @param property The key for getting a property.
+     *
+     * @return true if the property is in this snapshot, false otherwise.
+     */
+    public boolean hasProperty(Object property) {
+        return getState().hasProperty(property.toString());
+    }
+
+    /**
+     * Accessor method for testing to see if a particular
+     * property has a boolean value of true.
+     *
+     * @param property The key for getting a property.
+     *
+     * @return true if the property's value is true, false otherwise.
+     */
+    public boolean isTrue(Object property) {
+        return Boolean.valueOf(getProperty(property));
+    }
+
+    /**
+     * Accessor method for getting a copy of a property options list
+     * in this snapshot. Changing the copy doesn't change the snapshot, and
+     * since it's a new copy every time, getPropertyOptionsView should
+     * be used for reading options often.
+     *
+     * @param property The key for accessing the property options list.
+     *
+     * @return A copy of the property options list associated with the key.
+     */
+    public ArrayList<String> getPropertyOptionsList(Object property) {
+        PropertyOptionsList options = getPropertyOptionsView(property);
+        if (options == null) {
+            return null;
+        }
+        return new ArrayList<>(options);
+    }
+
+    /**
+     * Accessor method for getting the immutable property options list
+     * in this snapshot.
+     *
+     * @param property The key for accessing the property options list.
+     *
+     * @return The property options list associated with the key.
+     */
+    public PropertyOptionsList getPropertyOptionsView(Object property) {
+        return getState().propertyOptionsLists.get(property.toString());
+    }
+
+    /**
+     * This method gets the number of properties in this snapshot.
+     *
+     * @return The number of properties in this snapshot.
+     */
+    public int getNumProperties() {
+        return getState().getNumProperties();
+    }
+
+    /**
+     * This method gets the number of property options lists in this
+     * snapshot.
+     *
+     * @return The number of property options lists in this snapshot.
+     */
+    public int getNumPropertyOptionsLists() {
+        return getState().propertyOptionsLists.size();
+    }
+
+    /**
+     * This method lets go of this snapshot's data so it can be garbage
+     * collected once the manager and any other snapshots are done with
+     * it. Reading from a released snapshot throws an IllegalStateException.
+     */
+    public void release() {
+        state = null;
+    }
+
+    /**
+     * Accessor method for testing to see if this snapshot was released.
+     *
+     * @return true if release has been called, false otherwise.
+     */
+    public boolean isReleased() {
+        return state == null;
+    }
+
+    // THIS IS FOR THE MANAGER AND THE CLASSES THAT HELP IT, WHICH
+    // MAY NEED TO READ EVERYTHING IN THE SNAPSHOT
+    PropertiesState getState() {
+        PropertiesState snapshotState = state;
+        if (snapshotState == null) {
+            throw new IllegalStateException("Snapshot version " + version + " was released");
+        }
+        return snapshotState;
+    }
+}
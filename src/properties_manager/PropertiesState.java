@@ -0,0 +1,85 @@
+package properties_manager;
+
+/**
+ * PropertiesState.java
+ *
+ * This class holds everything the properties manager has at one version.
+ * It's never changed, the manager makes a new one for every change and
+ * replaces the old one with a single write, so whoever reads a state sees
+ * all of a change or none of it, and a state can be shared with snapshots
+ * and read by any number of threads without copying or waiting. Since the
+ * tables share most of their parts with those of the state before, making
+ * a new state costs little more than the change itself.
+ *
+ * @author THE McKilla Gorilla (accept no imposters)
+ * @version 2.0
+ */
+final class PropertiesState {
+    // WHAT THE MANAGER STARTS WITH, AND WHAT IT HAS AFTER BEING CLEARED,
+    // EXCEPT FOR THE VERSION
+    static final PropertiesState EMPTY = new PropertiesState(0,
+            PropertyTable.<String>empty(),
+            PropertyTable.<LazyPropertyValue>empty(),
+            PropertyTable.<PropertyOptionsList>empty(),
+            PropertyTable.<String>empty());
+
+    // EVERY CHANGE TO THE MANAGER GETS A NEW VERSION
+    final long version;
+
+    // PROPERTIES WITH THEIR REFERENCES FILLED IN, IF INTERPOLATING
+    final PropertyTable<String> properties;
+
+    // PROPERTIES LOADED IN LAZY MODE THAT HAVEN'T BEEN REPLACED SINCE. NOTE
+    // A PROPERTY IS NEVER IN BOTH properties AND lazyProperties
+    final PropertyTable<LazyPropertyValue> lazyProperties;
+
+    final PropertyTable<PropertyOptionsList> propertyOptionsLists;
+
+    // THE VALUES AS WRITTEN OF THE PROPERTIES IN properties THAT HAVE
+    // REFERENCES, SO THEY CAN BE SAVED THE WAY THEY WERE LOADED
+    final PropertyTable<String> rawProperties;
+
+    PropertiesState(long initVersion,
+                    PropertyTable<String> initProperties,
+                    PropertyTable<LazyPropertyValue> initLazyProperties,
+                    PropertyTable<PropertyOptionsList> initPropertyOptionsLists,
+                    PropertyTable<String> initRawProperties) {
+        version = initVersion;
+        properties = initProperties;
+        lazyProperties = initLazyProperties;
+        propertyOptionsLists = initPropertyOptionsLists;
+        rawProperties = initRawProperties;
+    }
+
+    /**
+     * Accessor method for a property, whichever way it was loaded.
+     *
+     * @param key The name of the property.
+     *
+     * @return Its value, or null if it isn't in this state.
+     */
+    String getProperty(String key) {
+        return PropertiesManager.lookUpProperty(properties, lazyProperties, key);
+    }
+
+    /**
+     * Accessor method for a property as it was written, before its
+     * references were filled in.
+     *
+     * @param key The name of the property.
+     *
+     * @return Its value as written, or null if it isn't in this state.
+     */
+    String getRawProperty(String key) {
+        String rawValue = rawProperties.get(key);
+        return rawValue != null ? rawValue : getProperty(key);
+    }
+
+    boolean hasProperty(String key) {
+        return properties.containsKey(key) || lazyProperties.containsKey(key);
+    }
+
+    int getNumProperties() {
+        return properties.size() + lazyProperties.size();
+    }
+}
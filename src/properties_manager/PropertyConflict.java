@@ -0,0 +1,97 @@
+package properties_manager;
+
+/**
+ * PropertyConflict.java
+ *
+ * This class records a property or property options list that was loaded
+ * more than once, so that the value loaded first was replaced by the one
+ * loaded later. The properties manager keeps these as it loads files,
+ * see PropertiesManager.getPropertyConflicts.
+ *
+ * @author THE McKilla Gorilla (accept no imposters)
+ * @version 2.0
+ */
+public final class PropertyConflict {
+    // THE NAME OF THE PROPERTY OR OPTIONS LIST
+    private final String name;
+
+    // true IF THIS IS ABOUT A PROPERTY OPTIONS LIST
+    private final boolean optionsList;
+
+    // WHERE THE REPLACED DATA CAME FROM, null IF IT WAS ADDED BY CODE
+    private final PropertySource overriddenSource;
+
+    // WHERE THE DATA THAT REPLACED IT CAME FROM
+    private final PropertySource source;
+
+    /**
+     * Constructor for a conflict found while loading.
+     *
+     * @param initName The name of the property or options list.
+     *
+     * @param initOptionsList true if it's an options list.
+     *
+     * @param initOverriddenSource Where the replaced data came from.
+     *
+     * @param initSource Where the data that replaced it came from.
+     */
+    PropertyConflict(   String initName,
+                        boolean initOptionsList,
+                        PropertySource initOverriddenSource,
+                        PropertySource initSource) {
+        name = initName;
+        optionsList = initOptionsList;
+        overriddenSource = initOverriddenSource;
+        source = initSource;
+    }
+
+    /**
+     * Accessor method for the name of the property or options list.
+     *
+     * @return The key the data was loaded with.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Accessor method for testing to see if this is about a property
+     * options list rather than a property.
+     *
+     * @return true if an options list was replaced, false if a property was.
+     */
+    public boolean isOptionsList() {
+        return optionsList;
+    }
+
+    /**
+     * Accessor method for where the replaced data came from.
+     *
+     * @return The replaced data's source, or null if it was added by code
+     * rather than loaded.
+     */
+    public PropertySource getOverriddenSource() {
+        return overriddenSource;
+    }
+
+    /**
+     * Accessor method for where the data that's now in the manager came from.
+     *
+     * @return The source of the replacing data.
+     */
+    public PropertySource getSource() {
+        return source;
+    }
+
+    /**
+     * This method describes the conflict in one line, for reports.
+     *
+     * @return A textual description of the conflict.
+     */
+    @Override
+    public String toString() {
+        return (optionsList ? "Property options list " : "Property ") + name
+                + " from " + (overriddenSource == null ? "code" : overriddenSource.toString())
+                + " overridden by " + source;
+    }
+}
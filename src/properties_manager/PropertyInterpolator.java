@@ -0,0 +1,314 @@
+package properties_manager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * PropertyInterpolator.java
+ *
+ * This class keeps track of properties whose values refer to other
+ * properties, like ${BASE_URL}/api, and fills in those references. The
+ * properties manager stores the filled in values with all the others so
+ * that getting them costs no more than getting any other property, and
+ * this class keeps the values as written, split up into their text and
+ * references, along with which properties refer to which. When some
+ * properties change, only the ones that refer to them, directly or
+ * through others, are filled in again, and they are done in order so
+ * each is filled in once, after everything it refers to.
+ *
+ * A reference to a property that doesn't exist is left as written, as
+ * are the values of properties that refer back to themselves, which we
+ * call cyclic, and those that refer to cyclic properties.
+ *
+ * @author THE McKilla Gorilla (accept no imposters)
+ * @version 2.0
+ */
+final class PropertyInterpolator {
+    // THIS IS WHAT A REFERENCE LOOKS LIKE
+    static final String REFERENCE_START = "${";
+    static final String REFERENCE_END = "}";
+
+    // THE VALUES OF PROPERTIES THAT HAVE REFERENCES, AS WRITTEN. EACH IS
+    // SPLIT UP SO THE EVEN INDICES HAVE TEXT AND THE ODD ONES HAVE THE
+    // NAMES OF REFERENCED PROPERTIES
+    private final HashMap<String, String[]> templates;
+
+    // THE SAME VALUES AS WRITTEN, IN A TABLE THAT'S NEVER CHANGED SO THE
+    // MANAGER CAN PUBLISH IT ALONG WITH THE FILLED IN VALUES
+    private PropertyTable<String> rawValues;
+
+    // FOR EACH REFERENCED PROPERTY, THE PROPERTIES THAT REFER TO IT
+    private final HashMap<String, HashSet<String>> dependents;
+
+    // THE PROPERTIES THAT COULDN'T BE FILLED IN BECAUSE OF A CYCLE
+    private final HashSet<String> cyclicProperties;
+
+    /**
+     * Default constructor, no properties have references yet.
+     */
+    PropertyInterpolator() {
+        templates = new HashMap<>();
+        rawValues = PropertyTable.empty();
+        dependents = new HashMap<>();
+        cyclicProperties = new HashSet<>();
+    }
+
+    /**
+     * This method splits a value up into its text and references.
+     *
+     * @param value The value as written.
+     *
+     * @return The value's text and referenced property names, alternating
+     * and starting with text, or null if the value has no references.
+     */
+    static String[] parse(String value) {
+        int referenceStart = value.indexOf(REFERENCE_START);
+        if (referenceStart < 0) {
+            return null;
+        }
+        ArrayList<String> parts = new ArrayList<>();
+        int textStart = 0;
+        while (referenceStart >= 0) {
+            int nameStart = referenceStart + REFERENCE_START.length();
+            int nameEnd = value.indexOf(REFERENCE_END, nameStart);
+            if (nameEnd < 0) {
+                break;
+            }
+            if (nameEnd > nameStart) {
+                parts.add(value.substring(textStart, referenceStart));
+                parts.add(value.substring(nameStart, nameEnd));
+                textStart = nameEnd + REFERENCE_END.length();
+                referenceStart = value.indexOf(REFERENCE_START, textStart);
+            }
+            else {
+                // ${} ISN'T A REFERENCE, IT'S JUST TEXT
+                referenceStart = value.indexOf(REFERENCE_START, nameEnd);
+            }
+        }
+        if (parts.isEmpty()) {
+            return null;
+        }
+        parts.add(value.substring(textStart));
+        return parts.toArray(new String[parts.size()]);
+    }
+
+    /**
+     * Accessor method for testing to see if any properties have references.
+     *
+     * @return true if no properties have references, false otherwise.
+     */
+    boolean isEmpty() {
+        return templates.isEmpty();
+    }
+
+    /**
+     * This method records the value of a property that has references,
+     * replacing what was recorded for it before. Note that the property's
+     * value still needs to be filled in, see resolve.
+     *
+     * @param name The name of the property.
+     *
+     * @param parts The value's text and references, from parse.
+     */
+    void putTemplate(String name, String[] parts) {
+        removeTemplate(name);
+        templates.put(name, parts);
+        StringBuilder value = new StringBuilder(parts[0]);
+        for (int i = 1; i < parts.length; i += 2) {
+            value.append(REFERENCE_START).append(parts[i]).append(REFERENCE_END).append(parts[i + 1]);
+        }
+        rawValues = rawValues.put(name, value.toString());
+        for (int i = 1; i < parts.length; i += 2) {
+            HashSet<String> referencingProperties = dependents.get(parts[i]);
+            if (referencingProperties == null) {
+                referencingProperties = new HashSet<>();
+                dependents.put(parts[i], referencingProperties);
+            }
+            referencingProperties.add(name);
+        }
+    }
+
+    /**
+     * This method forgets a property's references, for when it gets a
+     * value without any or is removed.
+     *
+     * @param name The name of the property.
+     */
+    void removeTemplate(String name) {
+        if (templates.isEmpty()) {
+            return;
+        }
+        String[] parts = templates.remove(name);
+        if (parts != null) {
+            rawValues = rawValues.remove(name);
+            for (int i = 1; i < parts.length; i += 2) {
+                HashSet<String> referencingProperties = dependents.get(parts[i]);
+                if (referencingProperties != null) {
+                    referencingProperties.remove(name);
+                    if (referencingProperties.isEmpty()) {
+                        dependents.remove(parts[i]);
+                    }
+                }
+            }
+            cyclicProperties.remove(name);
+        }
+    }
+
+    /**
+     * Accessor method for testing to see if any property with references
+     * would need to be filled in again if a property changed.
+     *
+     * @param name The name of the property that would change.
+     *
+     * @return true if the property has references or is referred to.
+     */
+    boolean isInvolved(String name) {
+        return !templates.isEmpty()
+                && (templates.containsKey(name) || dependents.containsKey(name));
+    }
+
+    /**
+     * Accessor method for a property's value as it was written.
+     *
+     * @param name The name of the property.
+     *
+     * @return Its value as written, or null if it has no references.
+     */
+    String getTemplate(String name) {
+        return rawValues.get(name);
+    }
+
+    /**
+     * Accessor method for the values as written of all the properties with
+     * references. The table is never changed, so it may be kept and shared.
+     *
+     * @return The values as written, keyed by property name.
+     */
+    PropertyTable<String> getTemplates() {
+        return rawValues;
+    }
+
+    /**
+     * Accessor method for the properties that couldn't be filled in because
+     * they refer back to themselves or to a property that does.
+     *
+     * @return The names of those properties.
+     */
+    ArrayList<String> getCyclicProperties() {
+        return new ArrayList<>(cyclicProperties);
+    }
+
+    /**
+     * This method fills in the values of every property with references
+     * that depends on the changed properties, putting them in properties.
+     * Everything they depend on is filled in first, so each is done once.
+     *
+     * @param changedNames The properties that were added, removed, or
+     * given new values.
+     *
+     * @param properties Where to get and put filled in values.
+     *
+     * @param lazyProperties Where to get other properties that were
+     * loaded lazily.
+     */
+    void resolve(   Collection<String> changedNames,
+                    PropertyTable.Editor<String> properties,
+                    PropertyTable.Editor<LazyPropertyValue> lazyProperties) {
+        // FIRST FIND EVERYTHING THAT HAS TO BE FILLED IN AGAIN
+        HashSet<String> visited = new HashSet<>();
+        ArrayList<String> affected = new ArrayList<>();
+        ArrayDeque<String> toVisit = new ArrayDeque<>(changedNames);
+        while (!toVisit.isEmpty()) {
+            String name = toVisit.poll();
+            if (visited.add(name)) {
+                if (templates.containsKey(name)) {
+                    affected.add(name);
+                }
+                HashSet<String> referencingProperties = dependents.get(name);
+                if (referencingProperties != null) {
+                    toVisit.addAll(referencingProperties);
+                }
+            }
+        }
+        if (affected.isEmpty()) {
+            return;
+        }
+
+        // COUNT HOW MANY OF THE AFFECTED PROPERTIES EACH ONE REFERS TO
+        HashMap<String, int[]> unresolvedReferences = new HashMap<>();
+        for (String name : affected) {
+            unresolvedReferences.put(name, new int[1]);
+        }
+        for (String name : affected) {
+            HashSet<String> referencingProperties = dependents.get(name);
+            if (referencingProperties != null) {
+                for (String referencingName : referencingProperties) {
+                    int[] count = unresolvedReferences.get(referencingName);
+                    if (count != null) {
+                        count[0]++;
+                    }
+                }
+            }
+        }
+
+        // NOW FILL THEM IN, EACH ONCE EVERYTHING IT REFERS TO IS DONE
+        ArrayDeque<String> ready = new ArrayDeque<>();
+        for (String name : affected) {
+            if (unresolvedReferences.get(name)[0] == 0) {
+                ready.add(name);
+            }
+        }
+        while (!ready.isEmpty()) {
+            String name = ready.poll();
+            unresolvedReferences.remove(name);
+            properties.put(name, fillIn(templates.get(name), properties, lazyProperties));
+            cyclicProperties.remove(name);
+            HashSet<String> referencingProperties = dependents.get(name);
+            if (referencingProperties != null) {
+                for (String referencingName : referencingProperties) {
+                    int[] count = unresolvedReferences.get(referencingName);
+                    if (count != null && --count[0] == 0) {
+                        ready.add(referencingName);
+                    }
+                }
+            }
+        }
+
+        // WHATEVER IS LEFT IS IN A CYCLE OR DEPENDS ON ONE
+        for (String name : unresolvedReferences.keySet()) {
+            properties.put(name, getTemplate(name));
+            cyclicProperties.add(name);
+        }
+    }
+
+    /**
+     * This method forgets all the properties with references.
+     */
+    void clear() {
+        templates.clear();
+        rawValues = PropertyTable.empty();
+        dependents.clear();
+        cyclicProperties.clear();
+    }
+
+    // MAKES THE VALUE FOR parts USING THE CURRENT VALUES OF WHAT IT REFERS TO
+    private static String fillIn(   String[] parts,
+                                    PropertyTable.Editor<String> properties,
+                                    PropertyTable.Editor<LazyPropertyValue> lazyProperties) {
+        StringBuilder value = new StringBuilder(parts[0]);
+        for (int i = 1; i < parts.length; i += 2) {
+            String referencedValue = PropertiesManager.lookUpProperty(properties, lazyProperties, parts[i]);
+            if (referencedValue == null) {
+                value.append(REFERENCE_START).append(parts[i]).append(REFERENCE_END);
+            }
+            else {
+                value.append(referencedValue);
+            }
+            value.append(parts[i + 1]);
+        }
+        return value.toString();
+    }
+}
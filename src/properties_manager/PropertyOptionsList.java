@@ -0,0 +1,121 @@
+package properties_manager;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.RandomAccess;
+
+/**
+ * PropertyOptionsList.java
+ *
+ * This class is an immutable list of options for a single property
+ * options list. The properties manager stores its options lists in this
+ * form so that the same object can be handed out to any number of callers
+ * without any of them needing to make a defensive copy, which matters for
+ * things like UI code that reads the options every time it renders.
+ *
+ * Note that size, get, and indexOf never allocate. For large lists an
+ * option-to-index map is built once at construction so that reverse
+ * lookups don't have to scan the whole list.
+ *
+ * @author THE McKilla Gorilla (accept no imposters)
+ * @version 2.0
+ */
+public final class PropertyOptionsList extends AbstractList<String> implements RandomAccess {
+    // LISTS WITH AT LEAST THIS MANY OPTIONS GET A REVERSE LOOKUP MAP,
+    // SMALLER ONES ARE FASTER TO JUST SCAN
+    public static final int INDEX_THRESHOLD = 16;
+
+    // THE OPTIONS THEMSELVES, IN ORDER
+    private final String[] options;
+
+    // OPTION TO FIRST INDEX, null FOR SMALL LISTS
+    private final HashMap<String, Integer> optionIndices;
+
+    /**
+     * Constructor for making an options list from any collection of
+     * options. The options are copied, so later changes to the argument
+     * will not be seen by this list.
+     *
+     * @param initOptions The options, in order, to put in this list.
+     */
+    public PropertyOptionsList(Collection<String> initOptions) {
+        this(initOptions.toArray(new String[initOptions.size()]));
+    }
+
+    /**
+     * This constructor takes ownership of the array, so it should
+     * only be used with arrays no one else has a reference to.
+     *
+     * @param initOptions The options, in order, to put in this list.
+     */
+    PropertyOptionsList(String[] initOptions) {
+        options = initOptions;
+        if (options.length >= INDEX_THRESHOLD) {
+            optionIndices = new HashMap<>((int)(options.length / 0.75f) + 1);
+            for (int i = 0; i < options.length; i++) {
+                // KEEP THE FIRST OCCURENCE TO MATCH List.indexOf
+                optionIndices.putIfAbsent(options[i], i);
+            }
+        }
+        else {
+            optionIndices = null;
+        }
+    }
+
+    /**
+     * Accessor method for the number of options in this list.
+     *
+     * @return The number of options in this list.
+     */
+    @Override
+    public int size() {
+        return options.length;
+    }
+
+    /**
+     * Accessor method for getting the option at the index location.
+     *
+     * @param index The location of the option to get.
+     *
+     * @return The option at the index location.
+     */
+    @Override
+    public String get(int index) {
+        return options[index];
+    }
+
+    /**
+     * This method finds where in this list the option is located.
+     *
+     * @param option The option to search for.
+     *
+     * @return The index of the first occurence of option, or -1
+     * if it is not in this list.
+     */
+    @Override
+    public int indexOf(Object option) {
+        if (optionIndices != null) {
+            Integer index = optionIndices.get(option);
+            return index == null ? -1 : index;
+        }
+        for (int i = 0; i < options.length; i++) {
+            if (option == null ? options[i] == null : option.equals(options[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Accessor method for testing to see if the option is in this list.
+     *
+     * @param option The option to search for.
+     *
+     * @return true if the option is in this list, false otherwise.
+     */
+    @Override
+    public boolean contains(Object option) {
+        return indexOf(option) >= 0;
+    }
+}
@@ -0,0 +1,205 @@
+package properties_manager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/**
+ * PropertyProvenance.java
+ *
+ * This class keeps track of where properties and property options lists
+ * were loaded from and which ones were loaded more than once. The
+ * properties manager keeps one for everything it has loaded, and one is
+ * also filled in for each file as it's loaded. Note that properties loaded
+ * in lazy mode know their own sources, see LazyPropertyValue, so they are
+ * not kept here.
+ *
+ * @author THE McKilla Gorilla (accept no imposters)
+ * @version 2.0
+ */
+final class PropertyProvenance {
+    // WHERE EACH PROPERTY AND OPTIONS LIST CAME FROM. NOTE THAT ALL THE
+    // PROPERTIES LOADED FROM THE SAME FILE SHARE ONE SOURCE
+    private final HashMap<String, PropertySource> propertySources;
+    private final HashMap<String, PropertySource> optionsListSources;
+
+    // THE LATEST CONFLICT FOUND FOR EACH PROPERTY AND OPTIONS LIST THAT WAS
+    // LOADED MORE THAN ONCE, IN THE ORDER FOUND. ONLY THE LATEST IS KEPT SO
+    // THAT RELOADING THE SAME FILES OVER AND OVER DOESN'T MAKE THESE GROW
+    private final LinkedHashMap<String, PropertyConflict> propertyConflicts;
+    private final LinkedHashMap<String, PropertyConflict> optionsListConflicts;
+
+    /**
+     * Default constructor, nothing has been loaded yet.
+     */
+    PropertyProvenance() {
+        propertySources = new HashMap<>();
+        optionsListSources = new HashMap<>();
+        propertyConflicts = new LinkedHashMap<>();
+        optionsListConflicts = new LinkedHashMap<>();
+    }
+
+    /**
+     * This method records where a property was loaded from.
+     *
+     * @param name The name of the property.
+     *
+     * @param source Where it was loaded from, or null if it wasn't
+     * loaded from anywhere we know of.
+     *
+     * @return Where it was loaded from before, or null if it wasn't.
+     */
+    PropertySource putPropertySource(String name, PropertySource source) {
+        if (source == null) {
+            return removePropertySource(name);
+        }
+        return propertySources.put(name, source);
+    }
+
+    /**
+     * This method records where a property options list was loaded from,
+     * noting a conflict if it was already loaded from somewhere.
+     *
+     * @param name The name of the property options list.
+     *
+     * @param source Where it was loaded from, or null if it wasn't
+     * loaded from anywhere we know of.
+     */
+    void addOptionsListSource(String name, PropertySource source) {
+        PropertySource overriddenSource = source == null
+                ? removeOptionsListSource(name)
+                : optionsListSources.put(name, source);
+        if (overriddenSource != null && source != null) {
+            addConflict(new PropertyConflict(name, true, overriddenSource, source));
+        }
+    }
+
+    /**
+     * This method records that something was loaded more than once,
+     * replacing any conflict recorded for it before.
+     *
+     * @param conflict What was loaded and where from.
+     */
+    void addConflict(PropertyConflict conflict) {
+        LinkedHashMap<String, PropertyConflict> conflicts = conflict.isOptionsList()
+                ? optionsListConflicts : propertyConflicts;
+        
+        // REMOVING IT FIRST PUTS IT AT THE END, SINCE IT WAS FOUND LAST
+        conflicts.remove(conflict.getName());
+        conflicts.put(conflict.getName(), conflict);
+    }
+
+    /**
+     * This method records conflicts found while loading a file.
+     *
+     * @param loaded What was recorded while loading the file.
+     */
+    void addConflicts(PropertyProvenance loaded) {
+        for (PropertyConflict conflict : loaded.propertyConflicts.values()) {
+            addConflict(conflict);
+        }
+        for (PropertyConflict conflict : loaded.optionsListConflicts.values()) {
+            addConflict(conflict);
+        }
+    }
+
+    /**
+     * This method adds the options list sources found while loading a
+     * file to these, noting a conflict for every list that is replaced,
+     * unless it was replaced by the same list from the same place.
+     *
+     * @param loaded What was recorded while loading the file.
+     *
+     * @param loadedOptionsLists The options lists that were loaded.
+     *
+     * @param propertyOptionsLists The options lists the manager had
+     * before, for noting ones that had been added by code.
+     */
+    void addOptionsListSources( PropertyProvenance loaded,
+                                HashMap<String, PropertyOptionsList> loadedOptionsLists,
+                                PropertyTable<PropertyOptionsList> propertyOptionsLists) {
+        for (String name : loadedOptionsLists.keySet()) {
+            PropertySource source = loaded.getOptionsListSource(name);
+            if (source == null) {
+                removeOptionsListSource(name);
+            }
+            else {
+                PropertySource overriddenSource = optionsListSources.put(name, source);
+                boolean reloaded = source.equals(overriddenSource)
+                        && loadedOptionsLists.get(name).equals(propertyOptionsLists.get(name));
+                if ((overriddenSource != null || propertyOptionsLists.containsKey(name)) && !reloaded) {
+                    addConflict(new PropertyConflict(name, true, overriddenSource, source));
+                }
+            }
+        }
+    }
+
+    /**
+     * Accessor method for where a property was loaded from.
+     *
+     * @param name The name of the property.
+     *
+     * @return Its source, or null if it wasn't loaded from a file.
+     */
+    PropertySource getPropertySource(String name) {
+        return propertySources.get(name);
+    }
+
+    /**
+     * Accessor method for where a property options list was loaded from.
+     *
+     * @param name The name of the property options list.
+     *
+     * @return Its source, or null if it wasn't loaded from a file.
+     */
+    PropertySource getOptionsListSource(String name) {
+        return optionsListSources.get(name);
+    }
+
+    /**
+     * This method forgets where a property came from, for when it's
+     * replaced by code or removed.
+     *
+     * @param name The name of the property.
+     *
+     * @return Where it was loaded from, or null if it wasn't.
+     */
+    PropertySource removePropertySource(String name) {
+        return propertySources.isEmpty() ? null : propertySources.remove(name);
+    }
+
+    /**
+     * This method forgets where a property options list came from, for
+     * when it's replaced by code or removed.
+     *
+     * @param name The name of the property options list.
+     *
+     * @return Where it was loaded from, or null if it wasn't.
+     */
+    PropertySource removeOptionsListSource(String name) {
+        return optionsListSources.isEmpty() ? null : optionsListSources.remove(name);
+    }
+
+    /**
+     * Accessor method for everything that was loaded more than once.
+     *
+     * @return A new list of the latest conflict for each property, in the
+     * order they were found, followed by those for the options lists.
+     */
+    ArrayList<PropertyConflict> getConflicts() {
+        ArrayList<PropertyConflict> conflicts = new ArrayList<>(propertyConflicts.size() + optionsListConflicts.size());
+        conflicts.addAll(propertyConflicts.values());
+        conflicts.addAll(optionsListConflicts.values());
+        return conflicts;
+    }
+
+    /**
+     * This method forgets everything that was recorded.
+     */
+    void clear() {
+        propertySources.clear();
+        optionsListSources.clear();
+        propertyConflicts.clear();
+        optionsListConflicts.clear();
+    }
+}
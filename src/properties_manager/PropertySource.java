@@ -0,0 +1,106 @@
+package properties_manager;
+
+/**
+ * PropertySource.java
+ *
+ * This class records where a property or property options list was
+ * loaded from, which is the file and, when it's known, the line of
+ * the file its element starts on. Line numbers are known for files
+ * loaded in lazy mode, since those are scanned directly, but not for
+ * files loaded through the DOM.
+ *
+ * @author THE McKilla Gorilla (accept no imposters)
+ * @version 2.0
+ */
+public final class PropertySource {
+    // THE LINE NUMBER USED WHEN WE DON'T KNOW IT
+    public static final int UNKNOWN_LINE_NUMBER = -1;
+
+    // THE FILE, AS IT WAS FOUND IN THE DATA PATH
+    private final String fileName;
+
+    // THE LINE NUMBER, STARTING AT 1, OR UNKNOWN_LINE_NUMBER
+    private final int lineNumber;
+
+    /**
+     * Constructor for a source file whose line number isn't known.
+     *
+     * @param initFileName The file the data was loaded from.
+     */
+    PropertySource(String initFileName) {
+        this(initFileName, UNKNOWN_LINE_NUMBER);
+    }
+
+    /**
+     * Constructor for a particular line of a source file.
+     *
+     * @param initFileName The file the data was loaded from.
+     *
+     * @param initLineNumber The line of the file the data starts on.
+     */
+    PropertySource(String initFileName, int initLineNumber) {
+        fileName = initFileName;
+        lineNumber = initLineNumber;
+    }
+
+    /**
+     * Accessor method for the file the data was loaded from.
+     *
+     * @return The name and path of the file.
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Accessor method for the line the data was found on.
+     *
+     * @return The line number, starting at 1, or UNKNOWN_LINE_NUMBER.
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Accessor method for testing to see if the line number is known.
+     *
+     * @return true if the line number is known, false otherwise.
+     */
+    public boolean hasLineNumber() {
+        return lineNumber != UNKNOWN_LINE_NUMBER;
+    }
+
+    /**
+     * This method tests to see if the other object is a source for the
+     * same line of the same file.
+     *
+     * @param other The object to compare to.
+     *
+     * @return true if other is a PropertySource with the same file name
+     * and line number, false otherwise.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof PropertySource)) {
+            return false;
+        }
+        PropertySource otherSource = (PropertySource)other;
+        return fileName.equals(otherSource.fileName) && lineNumber == otherSource.lineNumber;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * fileName.hashCode() + lineNumber;
+    }
+
+    /**
+     * This method describes the source as file:line, or just the file
+     * if the line isn't known.
+     *
+     * @return A textual description of where the data came from.
+     */
+    @Override
+    public String toString() {
+        return hasLineNumber() ? fileName + ":" + lineNumber : fileName;
+    }
+}
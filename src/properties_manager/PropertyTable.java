@@ -0,0 +1,629 @@
+package properties_manager;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * PropertyTable.java
+ *
+ * This class is an unchanging table of values keyed by name, which is how
+ * the properties manager keeps everything it has. Putting or removing a
+ * name makes a new table rather than changing this one, but the new table
+ * shares all but a handful of its parts with this one, so that costs about
+ * as much as changing a HashMap. That way the manager can hand its tables
+ * to any number of threads and snapshots without copying them or making
+ * anyone wait. Lots of changes at once should be made using an Editor,
+ * which changes the parts it made itself in place rather than copying them.
+ *
+ * The table is a hash array mapped trie. Each node uses the next 5 bits of
+ * a name's hash to pick one of 32 slots, but only has room for the slots
+ * it uses, and each slot holds either a name and its value or the node for
+ * the names whose hashes have the same bits so far. Names whose hashes are
+ * all the same go in a node of their own that's searched one by one.
+ *
+ * @author THE McKilla Gorilla (accept no imposters)
+ * @version 2.0
+ */
+final class PropertyTable<V> implements Iterable<Map.Entry<String, V>> {
+    // EACH LEVEL OF THE TRIE USES THIS MANY BITS OF THE HASH
+    private static final int BITS_PER_LEVEL = 5;
+    private static final int LEVEL_MASK = (1 << BITS_PER_LEVEL) - 1;
+
+    // THE MOST NODES THERE CAN BE FROM THE ROOT TO A VALUE, ONE PER 5 BITS
+    // OF THE HASH PLUS ONE FOR NAMES WITH THE SAME HASH
+    private static final int MAX_DEPTH = 32 / BITS_PER_LEVEL + 2;
+
+    // WHAT NODES RETURN FOR A NAME THEY DON'T HAVE, SINCE VALUES MAY BE null
+    private static final Object NOT_FOUND = new Object();
+
+    private static final PropertyTable<Object> EMPTY = new PropertyTable<>(null, 0);
+
+    // null FOR AN EMPTY TABLE
+    private final Node root;
+    private final int size;
+
+    private PropertyTable(Node initRoot, int initSize) {
+        root = initRoot;
+        size = initSize;
+    }
+
+    /**
+     * Accessor method for the table with nothing in it, which is shared.
+     *
+     * @return An empty table.
+     */
+    @SuppressWarnings("unchecked")
+    static <V> PropertyTable<V> empty() {
+        return (PropertyTable<V>)EMPTY;
+    }
+
+    /**
+     * This method makes a table with everything in the map.
+     *
+     * @param map The names and values to put in the table.
+     *
+     * @return A table with the same names and values as the map.
+     */
+    static <V> PropertyTable<V> of(Map<String, ? extends V> map) {
+        Editor<V> editor = PropertyTable.<V>empty().edit();
+        for (Map.Entry<String, ? extends V> entry : map.entrySet()) {
+            editor.put(entry.getKey(), entry.getValue());
+        }
+        return editor.done();
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Accessor method for the value of a name.
+     *
+     * @param key The name to look up.
+     *
+     * @return Its value, or null if the table doesn't have it.
+     */
+    @SuppressWarnings("unchecked")
+    V get(String key) {
+        if (root == null) {
+            return null;
+        }
+        Object value = root.find(0, hash(key), key);
+        return value == NOT_FOUND ? null : (V)value;
+    }
+
+    boolean containsKey(String key) {
+        return root != null && root.find(0, hash(key), key) != NOT_FOUND;
+    }
+
+    /**
+     * This method makes a table like this one but with the name given the
+     * value, sharing everything else with this one.
+     *
+     * @param key The name to put.
+     *
+     * @param value Its value.
+     *
+     * @return The new table, or this one if the name already had the value.
+     */
+    PropertyTable<V> put(String key, V value) {
+        Change change = new Change();
+        Node newRoot = (root == null ? BitmapNode.EMPTY : root).put(null, 0, hash(key), key, value, change);
+        return newRoot == root ? this : new PropertyTable<V>(newRoot, change.oldValue == NOT_FOUND ? size + 1 : size);
+    }
+
+    /**
+     * This method makes a table like this one but without the name,
+     * sharing everything else with this one.
+     *
+     * @param key The name to remove.
+     *
+     * @return The new table, or this one if it didn't have the name.
+     */
+    PropertyTable<V> remove(String key) {
+        if (root == null) {
+            return this;
+        }
+        Change change = new Change();
+        Node newRoot = root.remove(null, 0, hash(key), key, change);
+        return newRoot == root ? this : new PropertyTable<V>(newRoot, size - 1);
+    }
+
+    /**
+     * This method starts making changes to a copy of this table, see Editor.
+     *
+     * @return An editor with everything in this table.
+     */
+    Editor<V> edit() {
+        return new Editor<>(root, size);
+    }
+
+    /**
+     * This method goes through the names and values in no particular order.
+     *
+     * @return An iterator over the table's entries.
+     */
+    @Override
+    public Iterator<Map.Entry<String, V>> iterator() {
+        return new EntryIterator<>(root);
+    }
+
+    // THE HASH CODE OF A String IS KEPT BY THE String, WE JUST MIX ITS HIGH
+    // BITS INTO THE LOW ONES SINCE THE LOW ONES ARE USED FIRST
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * An Editor makes many changes to a table, then makes a new table from
+     * them with done. Nodes an editor copies belong to it, and it changes
+     * them in place rather than copying them again, so filling a table with
+     * lots of names costs little more than filling a HashMap. The table the
+     * editor was made from is never changed, and neither are the tables
+     * made by done, since the editor lets go of its nodes when it makes one.
+     * Note that an editor must only be used by one thread at a time.
+     */
+    static final class Editor<V> {
+        // THE NODES THAT BELONG TO THIS EDITOR HAVE THIS AS THEIR OWNER
+        private Object owner;
+
+        private Node root;
+        private int size;
+
+        // FILLED IN BY EACH CHANGE, KEPT TO SAVE MAKING A NEW ONE EACH TIME
+        private final Change change;
+
+        private Editor(Node initRoot, int initSize) {
+            owner = new Object();
+            root = initRoot;
+            size = initSize;
+            change = new Change();
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        V get(String key) {
+            if (root == null) {
+                return null;
+            }
+            Object value = root.find(0, hash(key), key);
+            return value == NOT_FOUND ? null : (V)value;
+        }
+
+        boolean containsKey(String key) {
+            return root != null && root.find(0, hash(key), key) != NOT_FOUND;
+        }
+
+        /**
+         * This method gives the name the value, like HashMap.put.
+         *
+         * @param key The name to put.
+         *
+         * @param value Its value.
+         *
+         * @return The name's old value, or null if it didn't have one.
+         */
+        @SuppressWarnings("unchecked")
+        V put(String key, V value) {
+            change.oldValue = NOT_FOUND;
+            root = (root == null ? BitmapNode.EMPTY : root).put(owner, 0, hash(key), key, value, change);
+            if (change.oldValue == NOT_FOUND) {
+                size++;
+                return null;
+            }
+            return (V)change.oldValue;
+        }
+
+        /**
+         * This method removes the name, like HashMap.remove.
+         *
+         * @param key The name to remove.
+         *
+         * @return The name's old value, or null if it didn't have one.
+         */
+        @SuppressWarnings("unchecked")
+        V remove(String key) {
+            if (root == null) {
+                return null;
+            }
+            change.oldValue = NOT_FOUND;
+            root = root.remove(owner, 0, hash(key), key, change);
+            if (change.oldValue == NOT_FOUND) {
+                return null;
+            }
+            size--;
+            return (V)change.oldValue;
+        }
+
+        /**
+         * This method makes a table with all the changes made so far. The
+         * editor may go on making changes, but they won't affect the table.
+         *
+         * @return The new table.
+         */
+        PropertyTable<V> done() {
+            // NODES THAT BELONGED TO THE OLD OWNER ARE NOW PART OF THE TABLE
+            owner = new Object();
+            return root == null ? PropertyTable.<V>empty() : new PropertyTable<V>(root, size);
+        }
+    }
+
+    // WHAT A CHANGE REPLACED, NOT_FOUND IF THE NAME WASN'T THERE
+    private static final class Change {
+        Object oldValue = NOT_FOUND;
+    }
+
+    // A NODE OF THE TRIE, ITS ARRAY HOLDS PAIRS OF A NAME AND ITS VALUE, OR
+    // FOR A BitmapNode ALSO null AND A CHILD NODE. A NODE MAY ONLY BE CHANGED
+    // IN PLACE BY THE EDITOR THAT OWNS IT
+    private abstract static class Node {
+        Object owner;
+        Object[] array;
+
+        Node(Object initOwner, Object[] initArray) {
+            owner = initOwner;
+            array = initArray;
+        }
+
+        // HOW MANY PAIRS IN array ARE USED, THE REST IS ROOM TO GROW
+        abstract int getNumPairs();
+
+        abstract Object find(int shift, int hash, String key);
+
+        // THESE RETURN THE CHANGED NODE, WHICH IS this IF NOTHING CHANGED OR
+        // IF IT WAS CHANGED IN PLACE, AND null IF IT'S NOW EMPTY
+        abstract Node put(Object editor, int shift, int hash, String key, Object value, Change change);
+
+        abstract Node remove(Object editor, int shift, int hash, String key, Change change);
+
+        // true IF THE NODE HAS JUST ONE NAME AND NO CHILDREN, SO IT CAN BE
+        // PUT IN ITS PARENT'S SLOT INSTEAD
+        boolean hasSingleEntry() {
+            return getNumPairs() == 1 && array[0] != null;
+        }
+
+        boolean isOwnedBy(Object editor) {
+            return editor != null && owner == editor;
+        }
+    }
+
+    // MAKES A NEW ARRAY FOR numPairs PAIRS, WITH ROOM TO GROW IF IT WILL
+    // BELONG TO AN EDITOR SINCE IT'S LIKELY TO GET MORE
+    private static Object[] newArray(Object editor, int numPairs, int maxPairs) {
+        int capacity = editor == null ? numPairs : Math.min(maxPairs, numPairs + (numPairs >> 1) + 1);
+        return new Object[2 * capacity];
+    }
+
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(null, 0, new Object[0]);
+
+        // BIT i IS SET IF SLOT i IS USED, THE USED SLOTS ARE KEPT IN ORDER
+        int bitmap;
+
+        BitmapNode(Object initOwner, int initBitmap, Object[] initArray) {
+            super(initOwner, initArray);
+            bitmap = initBitmap;
+        }
+
+        @Override
+        int getNumPairs() {
+            return Integer.bitCount(bitmap);
+        }
+
+        @Override
+        Object find(int shift, int hash, String key) {
+            Node node = this;
+            while (true) {
+                if (node instanceof CollisionNode) {
+                    return node.find(shift, hash, key);
+                }
+                BitmapNode bitmapNode = (BitmapNode)node;
+                int bit = 1 << ((hash >>> shift) & LEVEL_MASK);
+                if ((bitmapNode.bitmap & bit) == 0) {
+                    return NOT_FOUND;
+                }
+                int index = 2 * Integer.bitCount(bitmapNode.bitmap & (bit - 1));
+                Object keyOrNull = bitmapNode.array[index];
+                if (keyOrNull == null) {
+                    node = (Node)bitmapNode.array[index + 1];
+                    shift += BITS_PER_LEVEL;
+                }
+                else {
+                    return key.equals(keyOrNull) ? bitmapNode.array[index + 1] : NOT_FOUND;
+                }
+            }
+        }
+
+        @Override
+        Node put(Object editor, int shift, int hash, String key, Object value, Change change) {
+            int bit = 1 << ((hash >>> shift) & LEVEL_MASK);
+            int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                return insert(editor, bit, index, key, value);
+            }
+            Object keyOrNull = array[index];
+            Object valueOrChild = array[index + 1];
+            if (keyOrNull == null) {
+                Node child = (Node)valueOrChild;
+                Node newChild = child.put(editor, shift + BITS_PER_LEVEL, hash, key, value, change);
+                return newChild == child ? this : set(editor, index, null, newChild);
+            }
+            if (key.equals(keyOrNull)) {
+                change.oldValue = valueOrChild;
+                return valueOrChild == value ? this : set(editor, index, keyOrNull, value);
+            }
+
+            // TWO NAMES WANT THIS SLOT, SO IT GETS A CHILD WITH BOTH OF THEM
+            String otherKey = (String)keyOrNull;
+            Node child = makeChild(editor, shift + BITS_PER_LEVEL, hash(otherKey), otherKey, valueOrChild, hash, key, value);
+            return set(editor, index, null, child);
+        }
+
+        @Override
+        Node remove(Object editor, int shift, int hash, String key, Change change) {
+            int bit = 1 << ((hash >>> shift) & LEVEL_MASK);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+            Object keyOrNull = array[index];
+            if (keyOrNull == null) {
+                Node child = (Node)array[index + 1];
+                Node newChild = child.remove(editor, shift + BITS_PER_LEVEL, hash, key, change);
+                if (newChild == child) {
+                    return this;
+                }
+                if (newChild == null) {
+                    return delete(editor, bit, index);
+                }
+                if (newChild.hasSingleEntry()) {
+                    // KEEP THE TRIE NO DEEPER THAN IT NEEDS TO BE
+                    return set(editor, index, newChild.array[0], newChild.array[1]);
+                }
+                return set(editor, index, null, newChild);
+            }
+            if (!key.equals(keyOrNull)) {
+                return this;
+            }
+            change.oldValue = array[index + 1];
+            return delete(editor, bit, index);
+        }
+
+        // PUTS A PAIR IN THE SLOT AT index
+        private Node set(Object editor, int index, Object keyOrNull, Object valueOrChild) {
+            if (isOwnedBy(editor)) {
+                array[index] = keyOrNull;
+                array[index + 1] = valueOrChild;
+                return this;
+            }
+            int numPairs = getNumPairs();
+            Object[] newArray = newArray(editor, numPairs, 32);
+            System.arraycopy(array, 0, newArray, 0, 2 * numPairs);
+            newArray[index] = keyOrNull;
+            newArray[index + 1] = valueOrChild;
+            return new BitmapNode(editor, bitmap, newArray);
+        }
+
+        // ADDS A PAIR FOR A SLOT THAT WASN'T USED
+        private Node insert(Object editor, int bit, int index, String key, Object value) {
+            int numPairs = getNumPairs();
+            if (isOwnedBy(editor) && array.length >= 2 * (numPairs + 1)) {
+                System.arraycopy(array, index, array, index + 2, 2 * numPairs - index);
+                array[index] = key;
+                array[index + 1] = value;
+                bitmap |= bit;
+                return this;
+            }
+            Object[] newArray = newArray(editor, numPairs + 1, 32);
+            System.arraycopy(array, 0, newArray, 0, index);
+            newArray[index] = key;
+            newArray[index + 1] = value;
+            System.arraycopy(array, index, newArray, index + 2, 2 * numPairs - index);
+            if (isOwnedBy(editor)) {
+                array = newArray;
+                bitmap |= bit;
+                return this;
+            }
+            return new BitmapNode(editor, bitmap | bit, newArray);
+        }
+
+        // TAKES OUT THE PAIR AT index, RETURNING null IF NOTHING IS LEFT
+        private Node delete(Object editor, int bit, int index) {
+            if (bitmap == bit) {
+                return null;
+            }
+            int numPairs = getNumPairs();
+            if (isOwnedBy(editor)) {
+                System.arraycopy(array, index + 2, array, index, 2 * numPairs - index - 2);
+                array[2 * numPairs - 2] = null;
+                array[2 * numPairs - 1] = null;
+                bitmap ^= bit;
+                return this;
+            }
+            Object[] newArray = new Object[2 * (numPairs - 1)];
+            System.arraycopy(array, 0, newArray, 0, index);
+            System.arraycopy(array, index + 2, newArray, index, 2 * numPairs - index - 2);
+            return new BitmapNode(editor, bitmap ^ bit, newArray);
+        }
+    }
+
+    // MAKES A NODE WITH TWO NAMES THAT HAD THE SAME SLOT IN ITS PARENT. IF
+    // THEIR HASHES DIFFER, THEY DIFFER IN SOME 5 BITS FURTHER ALONG, SO THIS
+    // ALWAYS ENDS BEFORE THE BITS RUN OUT
+    private static Node makeChild(Object editor, int shift, int hash1, String key1, Object value1,
+                                  int hash2, String key2, Object value2) {
+        if (hash1 == hash2) {
+            return new CollisionNode(editor, hash1, new Object[]{key1, value1, key2, value2}, 2);
+        }
+        int slot1 = (hash1 >>> shift) & LEVEL_MASK;
+        int slot2 = (hash2 >>> shift) & LEVEL_MASK;
+        if (slot1 == slot2) {
+            Node child = makeChild(editor, shift + BITS_PER_LEVEL, hash1, key1, value1, hash2, key2, value2);
+            return new BitmapNode(editor, 1 << slot1, new Object[]{null, child});
+        }
+        Object[] array = slot1 < slot2
+                ? new Object[]{key1, value1, key2, value2}
+                : new Object[]{key2, value2, key1, value1};
+        return new BitmapNode(editor, (1 << slot1) | (1 << slot2), array);
+    }
+
+    // A NODE FOR NAMES WITH EXACTLY THE SAME HASH, WHICH ARE JUST SEARCHED
+    private static final class CollisionNode extends Node {
+        final int hash;
+        int numPairs;
+
+        CollisionNode(Object initOwner, int initHash, Object[] initArray, int initNumPairs) {
+            super(initOwner, initArray);
+            hash = initHash;
+            numPairs = initNumPairs;
+        }
+
+        @Override
+        int getNumPairs() {
+            return numPairs;
+        }
+
+        @Override
+        Object find(int shift, int findHash, String key) {
+            if (findHash == hash) {
+                for (int i = 0; i < 2 * numPairs; i += 2) {
+                    if (key.equals(array[i])) {
+                        return array[i + 1];
+                    }
+                }
+            }
+            return NOT_FOUND;
+        }
+
+        @Override
+        Node put(Object editor, int shift, int putHash, String key, Object value, Change change) {
+            if (putHash != hash) {
+                // THE NEW NAME ONLY SHARES SOME BITS WITH US, SO WE GO DOWN A
+                // LEVEL UNDER A NODE THAT CAN TELL US APART
+                BitmapNode parent = new BitmapNode(editor, 1 << ((hash >>> shift) & LEVEL_MASK), new Object[]{null, this});
+                return parent.put(editor, shift, putHash, key, value, change);
+            }
+            for (int i = 0; i < 2 * numPairs; i += 2) {
+                if (key.equals(array[i])) {
+                    change.oldValue = array[i + 1];
+                    if (array[i + 1] == value) {
+                        return this;
+                    }
+                    if (isOwnedBy(editor)) {
+                        array[i + 1] = value;
+                        return this;
+                    }
+                    Object[] newArray = array.clone();
+                    newArray[i + 1] = value;
+                    return new CollisionNode(editor, hash, newArray, numPairs);
+                }
+            }
+            Object[] newArray = array;
+            if (!isOwnedBy(editor) || array.length < 2 * (numPairs + 1)) {
+                newArray = new Object[2 * (numPairs + 1)];
+                System.arraycopy(array, 0, newArray, 0, 2 * numPairs);
+            }
+            newArray[2 * numPairs] = key;
+            newArray[2 * numPairs + 1] = value;
+            if (isOwnedBy(editor)) {
+                array = newArray;
+                numPairs++;
+                return this;
+            }
+            return new CollisionNode(editor, hash, newArray, numPairs + 1);
+        }
+
+        @Override
+        Node remove(Object editor, int shift, int removeHash, String key, Change change) {
+            if (removeHash != hash) {
+                return this;
+            }
+            for (int i = 0; i < 2 * numPairs; i += 2) {
+                if (key.equals(array[i])) {
+                    change.oldValue = array[i + 1];
+                    if (numPairs == 1) {
+                        return null;
+                    }
+                    Object[] newArray = new Object[2 * (numPairs - 1)];
+                    System.arraycopy(array, 0, newArray, 0, i);
+                    System.arraycopy(array, i + 2, newArray, i, 2 * numPairs - i - 2);
+                    if (isOwnedBy(editor)) {
+                        array = newArray;
+                        numPairs--;
+                        return this;
+                    }
+                    return new CollisionNode(editor, hash, newArray, numPairs - 1);
+                }
+            }
+            return this;
+        }
+    }
+
+    // GOES THROUGH THE TRIE DEPTH FIRST, KEEPING ITS PLACE IN EACH NODE
+    // FROM THE ROOT DOWN TO THE ONE IT'S IN
+    private static final class EntryIterator<V> implements Iterator<Map.Entry<String, V>> {
+        private final Node[] nodes = new Node[MAX_DEPTH];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth;
+        private Map.Entry<String, V> next;
+
+        EntryIterator(Node root) {
+            depth = root == null ? -1 : 0;
+            nodes[0] = root;
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                Node node = nodes[depth];
+                int position = positions[depth];
+                if (position >= 2 * node.getNumPairs()) {
+                    nodes[depth] = null;
+                    positions[depth] = 0;
+                    depth--;
+                    continue;
+                }
+                positions[depth] = position + 2;
+                Object keyOrNull = node.array[position];
+                if (keyOrNull != null) {
+                    next = new AbstractMap.SimpleImmutableEntry<>((String)keyOrNull, (V)node.array[position + 1]);
+                    return;
+                }
+                depth++;
+                nodes[depth] = (Node)node.array[position + 1];
+                positions[depth] = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, V> entry = next;
+            advance();
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package properties_manager;
+
+import java.io.Serializable;
+
+/**
+ * ValidationError.java
+ *
+ * This class describes one problem found while validating an XML file
+ * against its schema, which is where in the file it was found, what
+ * was wrong, and how bad it was.
+ *
+ * @author THE McKilla Gorilla (accept no imposters)
+ * @version 2.0
+ */
+public final class ValidationError implements Serializable
+{
+    /**
+     * How bad a problem is. Warnings don't make a file invalid, errors
+     * do, and fatal errors, like a file that isn't well formed XML or
+     * can't be read, also stop validation.
+     */
+    public enum Severity { WARNING, ERROR, FATAL_ERROR };
+
+    // THE LINE OR COLUMN NUMBER USED WHEN WE DON'T KNOW IT
+    public static final int UNKNOWN_POSITION = -1;
+
+    // HOW BAD IT IS
+    private final Severity severity;
+
+    // WHAT WAS WRONG
+    private final String message;
+
+    // WHERE IT WAS, LINES AND COLUMNS START AT 1
+    private final int lineNumber;
+    private final int columnNumber;
+
+    /**
+     * Constructor for a problem found at a particular place.
+     *
+     * @param initSeverity How bad the problem is.
+     *
+     * @param initMessage What was wrong.
+     *
+     * @param initLineNumber The line it was found on, or UNKNOWN_POSITION.
+     *
+     * @param initColumnNumber The column it was found at, or UNKNOWN_POSITION.
+     */
+    ValidationError(Severity initSeverity, String initMessage, int initLineNumber, int initColumnNumber)
+    {
+        severity = initSeverity;
+        message = initMessage;
+        lineNumber = initLineNumber;
+        columnNumber = initColumnNumber;
+    }
+
+    /**
+     * Accessor method for how bad the problem is.
+     *
+     * @return The severity of the problem.
+     */
+    public Severity getSeverity()
+    {
+        return severity;
+    }
+
+    /**
+     * Accessor method for what was wrong.
+     *
+     * @return The parser's description of the problem.
+     */
+    public String getMessage()
+    {
+        return message;
+    }
+
+    /**
+     * Accessor method for the line the problem was found on.
+     *
+     * @return The line number, starting at 1, or UNKNOWN_POSITION.
+     */
+    public int getLineNumber()
+    {
+        return lineNumber;
+    }
+
+    /**
+     * Accessor method for the column the problem was found at.
+     *
+     * @return The column number, starting at 1, or UNKNOWN_POSITION.
+     */
+    public int getColumnNumber()
+    {
+        return columnNumber;
+    }
+
+    /**
+     * This method describes the problem in one line, like
+     * line 3, column 14: ERROR: what was wrong.
+     *
+     * @return A textual description of the problem.
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder description = new StringBuilder();
+        if (lineNumber != UNKNOWN_POSITION)
+        {
+            description.append("line ").append(lineNumber);
+            if (columnNumber != UNKNOWN_POSITION)
+            {
+                description.append(", column ").append(columnNumber);
+            }
+            description.append(": ");
+        }
+        return description.append(severity).append(": ").append(message).toString();
+    }
+}
@@ -0,0 +1,130 @@
+package properties_manager;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ValidationResult.java
+ *
+ * This class holds everything found while validating an XML file against
+ * its schema, see XMLUtilities.validate. Depending on how validation was
+ * done it has either just the first error, or every error in the file,
+ * along with any warnings found before them. Like its errors, it is
+ * Serializable, so an InvalidXMLFileFormatException carrying one is too.
+ *
+ * @author THE McKilla Gorilla (accept no imposters)
+ * @version 2.0
+ */
+public final class ValidationResult implements Serializable
+{
+    // THE FILES THAT WERE USED
+    private final String xmlFile;
+    private final String xsdFile;
+
+    // EVERYTHING FOUND, IN THE ORDER IT WAS FOUND
+    private final List<ValidationError> errors;
+
+    // true IF ANY OF THEM WERE ERRORS RATHER THAN WARNINGS
+    private final boolean valid;
+
+    /**
+     * Constructor for the result of validating a file.
+     *
+     * @param initXMLFile The XML file that was validated.
+     *
+     * @param initXSDFile The schema it was validated against.
+     *
+     * @param initErrors Everything that was found.
+     */
+    ValidationResult(String initXMLFile, String initXSDFile, ArrayList<ValidationError> initErrors)
+    {
+        xmlFile = initXMLFile;
+        xsdFile = initXSDFile;
+        errors = Collections.unmodifiableList(initErrors);
+        boolean foundError = false;
+        for (ValidationError error : initErrors)
+        {
+            foundError |= error.getSeverity() != ValidationError.Severity.WARNING;
+        }
+        valid = !foundError;
+    }
+
+    /**
+     * Accessor method for the XML file that was validated.
+     *
+     * @return The name and path of the XML file.
+     */
+    public String getXMLFile()
+    {
+        return xmlFile;
+    }
+
+    /**
+     * Accessor method for the schema the file was validated against.
+     *
+     * @return The name and path of the schema.
+     */
+    public String getXSDFile()
+    {
+        return xsdFile;
+    }
+
+    /**
+     * Accessor method for testing to see if the file is valid, which it
+     * is if nothing worse than a warning was found.
+     *
+     * @return true if the file is valid, false otherwise.
+     */
+    public boolean isValid()
+    {
+        return valid;
+    }
+
+    /**
+     * Accessor method for everything found, warnings included.
+     *
+     * @return An unmodifiable list of the problems, in the order found.
+     */
+    public List<ValidationError> getErrors()
+    {
+        return errors;
+    }
+
+    /**
+     * Accessor method for the first problem that makes the file invalid.
+     *
+     * @return The first error or fatal error, or null if the file is valid.
+     */
+    public ValidationError getFirstError()
+    {
+        for (ValidationError error : errors)
+        {
+            if (error.getSeverity() != ValidationError.Severity.WARNING)
+            {
+                return error;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * This method describes the result, with one line for the file and
+     * one for each problem found.
+     *
+     * @return A textual description of the result.
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder description = new StringBuilder(xmlFile)
+                .append(valid ? " is valid" : " is not valid")
+                .append(" according to ").append(xsdFile);
+        for (ValidationError error : errors)
+        {
+            description.append(System.lineSeparator()).append("    ").append(error);
+        }
+        return description.toString();
+    }
+}
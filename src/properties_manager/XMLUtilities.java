@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.HashMap;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -15,7 +16,9 @@ import javax.xml.validation.Validator;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 
 /**
  * XMLUtilities.java
@@ -35,16 +38,60 @@ public class XMLUtilities
     // THIS REFERENCES A STANDARD SCHEMA FORMAT. NOTE THIS IS NOT THE SCHEMA
     public static final String SCHEMA_STANDARD_SPEC_URL = "http://www.w3.org/2001/XMLSchema";     
 
+    // THESE ARE THE PARSER AND SCHEMA IMPLEMENTATIONS BUILT INTO THE JDK,
+    // NAMING THEM SAVES THE JAXP SERVICE LOOKUP WHEN A FACTORY IS MADE
+    public static final String JDK_DOCUMENT_BUILDER_FACTORY = "com.sun.org.apache.xerces.internal.jaxp.DocumentBuilderFactoryImpl";
+    public static final String JDK_SCHEMA_FACTORY = "com.sun.org.apache.xerces.internal.jaxp.validation.XMLSchemaFactory";
+
+    // FOR FINDING SCHEMAS THAT ARE INSIDE A JAR FILE
+    private static final String JAR_ENTRY_SEPARATOR = "!/";
+    private static final String JAR_URL_PROTOCOL = "jar:";
+
+    // IF THESE ARE SET THESE CLASSES ARE USED FOR PARSING AND VALIDATING
+    // RATHER THAN LOOKING FOR IMPLEMENTATIONS ON THE CLASSPATH
+    private String documentBuilderFactoryClassName;
+    private String schemaFactoryClassName;
+
+    // COMPILING A SCHEMA IS EXPENSIVE, BUT THE RESULT CAN BE USED FOR ANY
+    // NUMBER OF VALIDATIONS, SO WE KEEP THEM HERE KEYED BY SCHEMA FILE
+    private HashMap<String, Schema> schemas;
+
+    /**
+     * Default Constructor, the JAXP implementations will be looked up
+     * the usual way.
+     */
+    public XMLUtilities()
+    {
+        schemas = new HashMap<>();
+    }
+
     /**
-     * Default Constructor, no data needs to be initialized.
+     * Mutator method for naming the parser and schema implementations to
+     * use, which skips the JAXP lookup of implementations on the classpath
+     * and saves some time for short-lived programs. Passing null for either
+     * goes back to the usual lookup. JDK_DOCUMENT_BUILDER_FACTORY and
+     * JDK_SCHEMA_FACTORY name the implementations built into the JDK.
+     * 
+     * @param initDocumentBuilderFactoryClassName The DocumentBuilderFactory
+     * class to use for parsing.
+     * 
+     * @param initSchemaFactoryClassName The SchemaFactory class to use for
+     * validation.
      */
-    public XMLUtilities() {}
+    public synchronized void setImplementations(String initDocumentBuilderFactoryClassName,
+                                                String initSchemaFactoryClassName)
+    {
+        documentBuilderFactoryClassName = initDocumentBuilderFactoryClassName;
+        schemaFactoryClassName = initSchemaFactoryClassName;
+        schemas.clear();
+    }
     
     /**
      * This method validates the xmlDocNameAndPath doc against the 
      * xmlSchemaNameAndPath schema and returns true if valid, false
      * otherwise. Note that this is taken directly (with comments)
      * from and example on the IBM site with only slight modifications.
+     * Use validate to find out what was wrong with an invalid doc.
      * 
      * @see http://www.ibm.com/developerworks/xml/library/x-javaxmlvalidapi/index.html
      * 
@@ -57,36 +104,64 @@ public class XMLUtilities
     public boolean validateXMLDoc(  String xmlDocNameAndPath,
                                     String xmlSchemaNameAndPath)
     {
+        return validate(xmlDocNameAndPath, xmlSchemaNameAndPath, false).isValid();
+    }
+    
+    /**
+     * This method validates the xmlDocNameAndPath doc against the
+     * xmlSchemaNameAndPath schema in one pass and reports everything
+     * found along the way, with where it was found and how bad it was.
+     * Normally validation stops at the first error, but if collectAllErrors
+     * is true it keeps going so that every error in the doc is reported
+     * at once, which is handy for checking lots of files. Note that if
+     * the doc isn't well formed XML validation always stops there.
+     * 
+     * @param xmlDocNameAndPath XML Doc to validate
+     * 
+     * @param xmlSchemaNameAndPath XML Schema to use in validation
+     * 
+     * @param collectAllErrors true to report every error in the doc,
+     * false to stop at the first one.
+     * 
+     * @return The result, which is valid if nothing worse than a warning
+     * was found.
+     */
+    public ValidationResult validate(   String xmlDocNameAndPath,
+                                        String xmlSchemaNameAndPath,
+                                        boolean collectAllErrors)
+    {
+        ValidationErrorCollector collector = new ValidationErrorCollector(collectAllErrors);
         try
         {
-            // 1. Lookup a factory for the W3C XML Schema language
-            SchemaFactory factory = 
-                    SchemaFactory.newInstance(SCHEMA_STANDARD_SPEC_URL);
-            
-            // 2. Compile the schema. 
-            // Here the schema is loaded from a java.io.File, but you could use 
-            // a java.net.URL or a javax.xml.transform.Source instead.
-            File schemaLocation = new File(xmlSchemaNameAndPath);
-            URL schemaLocationURL = schemaLocation.toURI().toURL();//new URL("file://" + xmlSchemaNameAndPath);
-            Schema schema = factory.newSchema(schemaLocationURL);
+            // 1 & 2. Get the compiled schema
+            Schema schema = getSchema(xmlSchemaNameAndPath);
             
-            // 3. Get a validator from the schema.
+            // 3. Get a validator from the schema, THE COLLECTOR GETS
+            // TOLD ABOUT EVERY PROBLEM AND DECIDES WHETHER TO GO ON
             Validator validator = schema.newValidator();
+            validator.setErrorHandler(collector);
             
             // 4. Parse the document you want to check.
             Source source = new StreamSource(xmlDocNameAndPath);
             
             // 5. Check the document
             validator.validate(source);
-            return true;
         }
-        // FOR ANY EXCEPTION THAT OCCURS WE'LL BLAME
-        // IT ON AN INVALID XML FILE
-        catch (SAXException | IOException e) 
+        // THE COLLECTOR HAS ALREADY RECORDED WHAT IT THREW TO STOP
+        // VALIDATION, ANYTHING ELSE IS RECORDED AS FATAL
+        catch (SAXException se)
         {
-            return false;
-        }          
-    }    
+            if (se != collector.stoppedBy)
+            {
+                collector.add(ValidationError.Severity.FATAL_ERROR, se);
+            }
+        }
+        catch (IOException ioe)
+        {
+            collector.add(ValidationError.Severity.FATAL_ERROR, ioe);
+        }
+        return new ValidationResult(xmlDocNameAndPath, xmlSchemaNameAndPath, collector.errors);
+    }
     
     /**
      * This method reads in the xmlFile, validates it against the
@@ -101,24 +176,23 @@ public class XMLUtilities
      * @return A normalized Document object fully loaded with the data found
      * in the xmlFile.
      * 
-     * @throws InvalidXMLFileFormatException Thrown if the xml file validation fails.
+     * @throws InvalidXMLFileFormatException Thrown if the xml file validation
+     * fails, it carries the validation result describing the first error.
      */
     public Document loadXMLDocument(String xmlFile, String xsdFile)
             throws InvalidXMLFileFormatException
     {
         // FIRST VALIDATE
-        boolean isValid = validateXMLDoc(xmlFile, xsdFile);
-        if (!isValid)
+        ValidationResult result = validate(xmlFile, xsdFile, false);
+        if (!result.isValid())
         {
-            throw new InvalidXMLFileFormatException(xmlFile, xsdFile);
+            throw new InvalidXMLFileFormatException(result);
         }
         
-        // THIS IS JAVA API STUFF
-        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
         try
         {            
             // FIRST RETRIEVE AND LOAD THE FILE INTO A TREE
-            DocumentBuilder db = dbf.newDocumentBuilder();
+            DocumentBuilder db = newDocumentBuilderFactory().newDocumentBuilder();
             Document xmlDoc = db.parse(xmlFile);
             xmlDoc.getDocumentElement().normalize();
            
@@ -134,6 +208,65 @@ public class XMLUtilities
         }           
     }   
     
+    /**
+     * This method gets the compiled schema for the xmlSchemaNameAndPath
+     * file, compiling it only the first time it's needed. Note that the
+     * compiled schema may be used by many threads at once.
+     * 
+     * @param xmlSchemaNameAndPath XML Schema to compile.
+     * 
+     * @return The compiled schema.
+     * 
+     * @throws SAXException Thrown if the schema itself is invalid.
+     * 
+     * @throws IOException Thrown if the schema file can't be read.
+     */
+    public synchronized Schema getSchema(String xmlSchemaNameAndPath)
+            throws SAXException, IOException
+    {
+        Schema schema = schemas.get(xmlSchemaNameAndPath);
+        if (schema == null)
+        {
+            // 1. Lookup a factory for the W3C XML Schema language
+            SchemaFactory factory = schemaFactoryClassName == null
+                    ? SchemaFactory.newInstance(SCHEMA_STANDARD_SPEC_URL)
+                    : SchemaFactory.newInstance(SCHEMA_STANDARD_SPEC_URL, schemaFactoryClassName, null);
+            
+            // 2. Compile the schema. 
+            // Here the schema is loaded from a java.io.File, but you could use 
+            // a java.net.URL or a javax.xml.transform.Source instead.
+            // A SCHEMA PACKAGED IN A JAR HAS A PATH LIKE file:/x.jar!/y.xsd
+            URL schemaLocationURL;
+            File schemaLocation = new File(xmlSchemaNameAndPath);
+            if (!schemaLocation.exists() && xmlSchemaNameAndPath.contains(JAR_ENTRY_SEPARATOR))
+            {
+                schemaLocationURL = new URL(JAR_URL_PROTOCOL + xmlSchemaNameAndPath);
+            }
+            else
+            {
+                schemaLocationURL = schemaLocation.toURI().toURL();//new URL("file://" + xmlSchemaNameAndPath);
+            }
+            schema = factory.newSchema(schemaLocationURL);
+            schemas.put(xmlSchemaNameAndPath, schema);
+        }
+        return schema;
+    }
+
+    // MAKES A FACTORY FOR PARSING, USING THE NAMED CLASS IF THERE IS ONE
+    private DocumentBuilderFactory newDocumentBuilderFactory()
+    {
+        String className;
+        synchronized (this)
+        {
+            className = documentBuilderFactoryClassName;
+        }
+        if (className == null)
+        {
+            return DocumentBuilderFactory.newInstance();
+        }
+        return DocumentBuilderFactory.newInstance(className, null);
+    }
+
     /**
      * This method can be used to get the node in the document
      * that is an element of type tagName. null is returned
@@ -262,4 +395,80 @@ public class XMLUtilities
         // AND RETURN ITS TYPE
         return nodeList.getLength();
     }    
+
+    /**
+     * This ErrorHandler records each problem the validator finds. Warnings
+     * never stop validation, errors only do if we aren't collecting all of
+     * them, and fatal errors always do.
+     */
+    private static class ValidationErrorCollector implements ErrorHandler
+    {
+        // EVERYTHING FOUND SO FAR
+        private final ArrayList<ValidationError> errors = new ArrayList<>();
+        
+        // true TO KEEP GOING AFTER AN ERROR
+        private final boolean collectAllErrors;
+        
+        // THE EXCEPTION WE THREW TO STOP VALIDATION, IF WE DID
+        private SAXParseException stoppedBy;
+        
+        ValidationErrorCollector(boolean initCollectAllErrors)
+        {
+            collectAllErrors = initCollectAllErrors;
+        }
+        
+        @Override
+        public void warning(SAXParseException spe)
+        {
+            add(ValidationError.Severity.WARNING, spe);
+        }
+        
+        @Override
+        public void error(SAXParseException spe) throws SAXParseException
+        {
+            add(ValidationError.Severity.ERROR, spe);
+            if (!collectAllErrors)
+            {
+                stoppedBy = spe;
+                throw spe;
+            }
+        }
+        
+        @Override
+        public void fatalError(SAXParseException spe) throws SAXParseException
+        {
+            add(ValidationError.Severity.FATAL_ERROR, spe);
+            stoppedBy = spe;
+            throw spe;
+        }
+        
+        // RECORDS THE PROBLEM, WITH ITS LOCATION IF IT HAS ONE
+        void add(ValidationError.Severity severity, Exception e)
+        {
+            int lineNumber = ValidationError.UNKNOWN_POSITION;
+            int columnNumber = ValidationError.UNKNOWN_POSITION;
+            if (e instanceof SAXParseException)
+            {
+                SAXParseException spe = (SAXParseException)e;
+                lineNumber = Math.max(spe.getLineNumber(), ValidationError.UNKNOWN_POSITION);
+                columnNumber = Math.max(spe.getColumnNumber(), ValidationError.UNKNOWN_POSITION);
+            }
+            String message = e.getMessage() != null ? e.getMessage() : e.toString();
+            
+            // THE JDK'S VALIDATOR REPORTS SOME ERRORS TWICE, SO WE SKIP
+            // A PROBLEM IF IT'S THE SAME AS THE ONE JUST BEFORE IT
+            if (!errors.isEmpty())
+            {
+                ValidationError last = errors.get(errors.size() - 1);
+                if ((last.getSeverity() == severity)
+                        && (last.getLineNumber() == lineNumber)
+                        && (last.getColumnNumber() == columnNumber)
+                        && last.getMessage().equals(message))
+                {
+                    return;
+                }
+            }
+            errors.add(new ValidationError(severity, message, lineNumber, columnNumber));
+        }
+    }
 }
\ No newline at end of file
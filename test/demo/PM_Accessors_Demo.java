@@ -0,0 +1,38 @@
+package demo;
+
+import properties_manager.InvalidXMLFileFormatException;
+import properties_manager.PropertiesManager;
+
+/**
+ * This driver demonstrates using a typed accessor class generated from
+ * a properties XML file, in this case DemoProps, which the build makes
+ * from valid_test_properties.xml using the generate-accessors target.
+ * Unlike PM_Demo_Driver, misspelling a property here won't compile.
+ * 
+ * @author THE McKilla Gorilla (accept no imposters)
+ * @version 2.0
+ */
+public class PM_Accessors_Demo {
+    
+    public static void main(String[] args) {
+        try {
+            // LOAD THE PROPERTIES AS USUAL
+            PropertiesManager props = PropertiesManager.getPropertiesManager();
+            props.setPropertiesDataPath("test/junit_test_beds/data/");
+            props.loadProperties("valid_test_properties.xml");
+            
+            // THEN READ THEM ALL INTO THE GENERATED CLASS ONCE
+            DemoProps demoProps = DemoProps.load(props);
+            
+            // NOW THEY'RE JUST FIELDS
+            System.out.println("myString was loaded as: " + demoProps.myString);
+            System.out.println("The first option loaded is " + demoProps.myStringOptions.get(0));
+            
+            // OR THEY CAN BE GOTTEN BY SLOT
+            System.out.println("myString2 was loaded as: " + demoProps.get(DemoProps.PROPERTY_MY_STRING_2));
+        }
+        catch(InvalidXMLFileFormatException ixffe) {
+            System.out.println("AN ERROR OCCURRED!!!");
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package demo;
+
+import properties_manager.PropertiesBatch;
+import properties_manager.PropertiesManager;
+
+/**
+ * This driver compares adding many properties one at a time using
+ * addProperty with adding them all at once using a PropertiesBatch,
+ * like an importer would. Run it with the number of properties as an
+ * argument (500000 by default). Since both make lots of garbage, the
+ * best time of several rounds is reported, each after a garbage collection.
+ *
+ * @author THE McKilla Gorilla (accept no imposters)
+ * @version 2.0
+ */
+public class PM_Batch_Benchmark {
+
+    // RUN EVERYTHING A FEW TIMES SO THE JIT IS WARMED UP AND
+    // REPORT THE BEST TIMES
+    public static final int NUM_ROUNDS = 10;
+
+    public static void main(String[] args) {
+        int numProperties = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+
+        // MAKE THE KEYS AND VALUES AHEAD OF TIME SO WE DON'T TIME THAT
+        String[] keys = new String[numProperties];
+        String[] values = new String[numProperties];
+        for (int i = 0; i < numProperties; i++) {
+            keys[i] = "PROPERTY_" + i;
+            values[i] = "Value number " + i;
+        }
+
+        PropertiesManager props = PropertiesManager.getPropertiesManager();
+        long addTime = Long.MAX_VALUE;
+        long batchTime = Long.MAX_VALUE;
+        for (int round = 0; round < NUM_ROUNDS; round++) {
+            addTime = Math.min(addTime, timeAddProperty(props, keys, values));
+            batchTime = Math.min(batchTime, timeApplyBatch(props, keys, values));
+        }
+        System.out.println("Properties added: " + numProperties);
+        System.out.println("addProperty:  " + (addTime / 1_000_000) + " ms, "
+                + (numProperties * 1_000_000_000L / addTime) + " properties/s");
+        System.out.println("applyBatch:   " + (batchTime / 1_000_000) + " ms, "
+                + (numProperties * 1_000_000_000L / batchTime) + " properties/s");
+        props.clear();
+    }
+
+    private static long timeAddProperty(PropertiesManager props, String[] keys, String[] values) {
+        props.clear();
+        System.gc();
+        long start = System.nanoTime();
+        for (int i = 0; i < keys.length; i++) {
+            props.addProperty(keys[i], values[i]);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long timeApplyBatch(PropertiesManager props, String[] keys, String[] values) {
+        props.clear();
+        System.gc();
+        long start = System.nanoTime();
+        PropertiesBatch batch = new PropertiesBatch(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            batch.addProperty(keys[i], values[i]);
+        }
+        props.applyBatch(batch);
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,96 @@
+package demo;
+
+import java.util.ArrayList;
+import properties_manager.PropertiesManager;
+import properties_manager.PropertyOptionsList;
+
+/**
+ * This driver compares the old way of reading options lists, where
+ * callers copy the list every time they use it (which is what
+ * getPropertyOptionsList now does for them), with reading from the
+ * shared immutable view. Run it with the number of options as an
+ * argument (1000 by default).
+ *
+ * @author THE McKilla Gorilla (accept no imposters)
+ * @version 2.0
+ */
+public class PM_Options_Benchmark {
+
+    enum BenchProps { BENCH_OPTIONS };
+
+    // HOW MANY TIMES WE'LL READ THE LIST FOR EACH MEASUREMENT
+    public static final int NUM_READS = 100_000;
+    public static final int NUM_WARM_UP_ROUNDS = 5;
+
+    // KEEPS THE JIT FROM THROWING AWAY OUR WORK
+    private static long sink;
+
+    public static void main(String[] args) {
+        int numOptions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+        // MAKE A BIG OPTIONS LIST
+        PropertiesManager props = PropertiesManager.getPropertiesManager();
+        ArrayList<String> options = new ArrayList<>();
+        for (int i = 0; i < numOptions; i++) {
+            options.add("OPTION_" + i);
+        }
+        props.addPropertyOptionsList(BenchProps.BENCH_OPTIONS, options);
+        String lastOption = options.get(numOptions - 1);
+
+        // RUN EVERYTHING A FEW TIMES SO THE JIT IS WARMED UP, ONLY
+        // THE LAST ROUND GETS REPORTED
+        for (int round = 0; round <= NUM_WARM_UP_ROUNDS; round++) {
+            long copyTime = timeCopyReads(props);
+            long viewTime = timeViewReads(props);
+            long copyLookupTime = timeCopyLookups(props, lastOption);
+            long viewLookupTime = timeViewLookups(props, lastOption);
+            if (round == NUM_WARM_UP_ROUNDS) {
+                System.out.println("Options in list: " + numOptions);
+                System.out.println("Copy & iterate:   " + (copyTime / NUM_READS) + " ns/read");
+                System.out.println("View & iterate:   " + (viewTime / NUM_READS) + " ns/read");
+                System.out.println("Copy & indexOf:   " + (copyLookupTime / NUM_READS) + " ns/lookup");
+                System.out.println("View & indexOf:   " + (viewLookupTime / NUM_READS) + " ns/lookup");
+            }
+        }
+        props.clear();
+    }
+
+    private static long timeCopyReads(PropertiesManager props) {
+        long start = System.nanoTime();
+        for (int i = 0; i < NUM_READS; i++) {
+            ArrayList<String> options = props.getPropertyOptionsList(BenchProps.BENCH_OPTIONS);
+            for (int j = 0; j < options.size(); j++) {
+                sink += options.get(j).length();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long timeViewReads(PropertiesManager props) {
+        long start = System.nanoTime();
+        for (int i = 0; i < NUM_READS; i++) {
+            PropertyOptionsList options = props.getPropertyOptionsView(BenchProps.BENCH_OPTIONS);
+            for (int j = 0; j < options.size(); j++) {
+                sink += options.get(j).length();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long timeCopyLookups(PropertiesManager props, String option) {
+        long start = System.nanoTime();
+        for (int i = 0; i < NUM_READS; i++) {
+            ArrayList<String> options = props.getPropertyOptionsList(BenchProps.BENCH_OPTIONS);
+            sink += options.indexOf(option);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long timeViewLookups(PropertiesManager props, String option) {
+        long start = System.nanoTime();
+        for (int i = 0; i < NUM_READS; i++) {
+            sink += props.getPropertyOptionsView(BenchProps.BENCH_OPTIONS).indexOf(option);
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,66 @@
+package demo;
+
+import java.lang.management.ManagementFactory;
+import properties_manager.InvalidXMLFileFormatException;
+import properties_manager.PropertiesManager;
+import properties_manager.XMLUtilities;
+
+/**
+ * PropertiesStartupTimer.java
+ *
+ * This program measures how long a brand new JVM takes to load a
+ * properties file and get its first property, which for short-lived
+ * programs is mostly spent loading and warming up the JAXP classes used
+ * by XMLUtilities. It is also used as the training run when the build
+ * makes a class data sharing archive (see the cds-archive target in
+ * build.xml), which lets later JVMs skip much of that class loading.
+ * It isn't part of the library, the build puts it in a jar of its own.
+ *
+ * java demo.PropertiesStartupTimer dataPath xmlFile property [-explicit]
+ *
+ * The -explicit flag names the JDK's own parser and schema
+ * implementations rather than having JAXP look them up.
+ *
+ * @author THE McKilla Gorilla (accept no imposters)
+ * @version 2.0
+ */
+public class PropertiesStartupTimer {
+    // PASS THIS TO NAME THE JAXP IMPLEMENTATIONS EXPLICITLY
+    public static final String EXPLICIT_IMPLEMENTATIONS_FLAG = "-explicit";
+
+    /**
+     * This loads the file, gets the property, and reports the times.
+     *
+     * @param args The data path, XML file, property to get, and
+     * optionally the -explicit flag.
+     */
+    public static void main(String[] args) {
+        long mainStart = System.nanoTime();
+        if (args.length < 3) {
+            System.err.println("Usage: PropertiesStartupTimer dataPath xmlFile property [" + EXPLICIT_IMPLEMENTATIONS_FLAG + "]");
+            System.exit(1);
+        }
+        boolean explicit = args.length > 3 && args[3].equals(EXPLICIT_IMPLEMENTATIONS_FLAG);
+        try {
+            PropertiesManager props = PropertiesManager.getPropertiesManager();
+            if (explicit) {
+                props.setXMLImplementations(XMLUtilities.JDK_DOCUMENT_BUILDER_FACTORY, XMLUtilities.JDK_SCHEMA_FACTORY);
+            }
+            props.setPropertiesDataPath(args[0]);
+            props.loadProperties(args[1]);
+            String value = props.getProperty(args[2]);
+            long firstPropertyTime = System.nanoTime() - mainStart;
+            
+            // ASK FOR THE UPTIME ONLY AFTER WE'RE DONE TIMING SINCE IT LOADS MORE CLASSES
+            long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+            System.out.println(args[2] + " = " + value);
+            System.out.printf("Time to first property: %.1f ms after main, %d ms after JVM start%s%n",
+                    firstPropertyTime / 1_000_000.0, uptime,
+                    explicit ? " (explicit JAXP implementations)" : "");
+        }
+        catch (InvalidXMLFileFormatException ixffe) {
+            System.err.println(ixffe);
+            System.exit(1);
+        }
+    }
+}
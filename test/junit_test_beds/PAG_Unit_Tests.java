@@ -0,0 +1,142 @@
+package junit_test_beds;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import static junit_test_beds.PM_Unit_Tests.UNIT_TEST_PATH;
+import static junit_test_beds.XMLU_Unit_Tests.VALID_XML_RESOURCE_PATH;
+import org.junit.Assert;
+import org.junit.Test;
+import properties_manager.PropertiesAccessorGenerator;
+import properties_manager.PropertiesManager;
+import properties_manager.PropertyOptionsList;
+
+/**
+ * PAG_Unit_Tests.java
+ *
+ * This file provides a test bed for the PropertiesAccessorGenerator class,
+ * making sure the classes it generates have what they should and compile.
+ *
+ * @author McKilla Gorilla
+ * @version 2.0
+ */
+public class PAG_Unit_Tests {
+    public static final String GENERATED_CLASS_NAME = "generated.TestProps";
+    public static final String ACCESSOR_XML_RESOURCE_PATH = "data/accessor_test_properties.xml";
+
+    /**
+     * This test method generates an accessor class for the valid test
+     * file and checks that it has slots and fields for everything.
+     */
+    @Test
+    public void testGenerateAccessors() {
+        try {
+            String testXMLPath = getClass().getResource(VALID_XML_RESOURCE_PATH).getPath();
+            Path outputDir = Files.createTempDirectory("pag_test");
+            PropertiesAccessorGenerator generator = new PropertiesAccessorGenerator();
+            generator.loadPropertyNames(testXMLPath);
+            File sourceFile = generator.generate(GENERATED_CLASS_NAME, outputDir.toFile(), "valid_test_properties.xml");
+
+            // IT SHOULD BE IN THE PACKAGE DIRECTORY
+            Assert.assertEquals(outputDir.resolve("generated").resolve("TestProps.java").toFile(), sourceFile);
+            String source = new String(Files.readAllBytes(sourceFile.toPath()), StandardCharsets.UTF_8);
+            Assert.assertTrue(source.contains("package generated;"));
+            Assert.assertTrue(source.contains("public final class TestProps"));
+            Assert.assertTrue(source.contains("public static final int PROPERTY_MY_STRING = 0;"));
+            Assert.assertTrue(source.contains("public static final int PROPERTY_MY_STRING_2 = 1;"));
+            Assert.assertTrue(source.contains("public static final int OPTIONS_MY_STRING_OPTIONS_2 = 1;"));
+            Assert.assertTrue(source.contains("public final String myString2;"));
+            Assert.assertTrue(source.contains("public final PropertyOptionsList myStringOptions;"));
+
+            // AND IT SHOULD COMPILE
+            compile(sourceFile, outputDir);
+
+            deleteAll(outputDir);
+        }
+        catch (Exception ex) {
+            Assert.fail();
+        }
+    }
+
+    /**
+     * This test method generates an accessor class for properties whose
+     * names clash with the names the generated code uses itself, and whose
+     * values would change if read as numbers, and checks that it compiles
+     * and reads the values as they were written.
+     */
+    @Test
+    public void testNameClashesAndLeadingZeros() {
+        PropertiesManager props = PropertiesManager.getPropertiesManager();
+        try {
+            String testXMLPath = getClass().getResource(ACCESSOR_XML_RESOURCE_PATH).getPath();
+            Path outputDir = Files.createTempDirectory("pag_test");
+            PropertiesAccessorGenerator generator = new PropertiesAccessorGenerator();
+            generator.loadPropertyNames(testXMLPath);
+            File sourceFile = generator.generate(GENERATED_CLASS_NAME, outputDir.toFile(), "accessor_test_properties.xml");
+            String source = new String(Files.readAllBytes(sourceFile.toPath()), StandardCharsets.UTF_8);
+            Assert.assertTrue(source.contains("public static final int PROPERTY_NAMES_2 = 0;"));
+            Assert.assertTrue(source.contains("public static final int OPTIONS_LIST_NAMES_2 = 0;"));
+            Assert.assertTrue(source.contains("public final String names;"));
+            Assert.assertTrue(source.contains("public final String snapshot_2;"));
+            Assert.assertTrue(source.contains("public final String listNames;"));
+            Assert.assertTrue(source.contains("public final int count;"));
+            Assert.assertTrue(source.contains("public final double rate;"));
+            Assert.assertTrue(source.contains("public final boolean enabled;"));
+            Assert.assertTrue(source.contains("public final PropertyOptionsList listNames_2;"));
+
+            // NOW COMPILE IT AND READ THE PROPERTIES WITH IT
+            try (URLClassLoader loader = compile(sourceFile, outputDir)) {
+                props.setPropertiesDataPath(UNIT_TEST_PATH);
+                props.clear();
+                props.loadProperties(ACCESSOR_XML_RESOURCE_PATH);
+                Class<?> accessorClass = loader.loadClass(GENERATED_CLASS_NAME);
+                Object accessors = accessorClass.getMethod("load", PropertiesManager.class).invoke(null, props);
+                Assert.assertEquals("007", accessorClass.getField("names").get(accessors));
+                Assert.assertEquals("1.50", accessorClass.getField("snapshot_2").get(accessors));
+                Assert.assertEquals("TRUE", accessorClass.getField("listNames").get(accessors));
+                Assert.assertEquals(42, accessorClass.getField("count").getInt(accessors));
+                Assert.assertEquals(0.5, accessorClass.getField("rate").getDouble(accessors), 0.0);
+                Assert.assertTrue(accessorClass.getField("enabled").getBoolean(accessors));
+                PropertyOptionsList options = (PropertyOptionsList)accessorClass.getField("listNames_2").get(accessors);
+                Assert.assertEquals("Monday", options.get(0));
+            }
+
+            deleteAll(outputDir);
+        }
+        catch (Exception ex) {
+            Assert.fail();
+        }
+        finally {
+            props.clear();
+        }
+    }
+
+    // COMPILES THE GENERATED SOURCE INTO outputDir, FAILING THE TEST IF IT
+    // DOESN'T COMPILE, AND RETURNS A CLASS LOADER FOR WHAT WAS COMPILED
+    private URLClassLoader compile(File sourceFile, Path outputDir) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assert.assertNotNull("Tests must be run on a JDK to compile generated code", compiler);
+        int result = compiler.run(null, null, null,
+                "-classpath", System.getProperty("java.class.path"),
+                "-d", outputDir.toString(),
+                sourceFile.getPath());
+        Assert.assertEquals(0, result);
+        return new URLClassLoader(new URL[] { outputDir.toUri().toURL() }, getClass().getClassLoader());
+    }
+
+    private void deleteAll(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Object path : paths.sorted(Comparator.reverseOrder()).toArray()) {
+                Files.delete((Path)path);
+            }
+        }
+    }
+}
@@ -0,0 +1,489 @@
+package junit_test_beds;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import properties_manager.InvalidXMLFileFormatException;
+import properties_manager.PropertiesBatch;
+import properties_manager.PropertiesManager;
+import properties_manager.PropertiesSnapshot;
+import properties_manager.PropertyOptionsList;
+import properties_manager.PropertySource;
+import properties_manager.ValidationError;
+import properties_manager.ValidationResult;
+import static properties_manager.PropertiesManager.NAME_ATT;
+import static properties_manager.PropertiesManager.OPTION_ELEMENT;
+import static properties_manager.PropertiesManager.PROPERTY_ELEMENT;
+import static properties_manager.PropertiesManager.PROPERTY_OPTIONS_ELEMENT;
+import static properties_manager.PropertiesManager.VALUE_ATT;
+
+/**
+ * PM_Scale_Tests.java
+ *
+ * This file tests the PropertiesManager with files made by the
+ * PropertiesDataGenerator, checking that big files load correctly and
+ * within time and memory limits, that broken and fuzzed files are
+ * rejected or loaded the same way in both loading modes, and that
+ * lookups are right while other threads are changing things.
+ *
+ * The sizes and limits come from system properties, see the
+ * test-sys-prop entries in nbproject/project.properties, so that a
+ * build can run them bigger, for example with
+ * ant scale-test -Dtest-sys-prop.pm.scale.sizes=1000,100000,10000000
+ * Note these only run with the scale-test target, not the test one.
+ *
+ * @author McKilla Gorilla
+ * @version 2.0
+ */
+public class PM_Scale_Tests {
+    // THE SYSTEM PROPERTIES, AND WHAT TO USE IF THEY AREN'T SET
+    public static final String SIZES_PROPERTY                   = "pm.scale.sizes";
+    public static final String DEFAULT_SIZES                    = "1000,10000";
+    public static final String SEED_PROPERTY                    = "pm.scale.seed";
+    public static final long   DEFAULT_SEED                     = 1;
+    public static final String MAX_LOAD_MILLIS_PROPERTY         = "pm.scale.max.load.millis";
+    public static final long   DEFAULT_MAX_LOAD_MILLIS          = 1000;
+    public static final String MAX_LOAD_NANOS_PER_ENTRY_PROPERTY = "pm.scale.max.load.nanos.per.entry";
+    public static final long   DEFAULT_MAX_LOAD_NANOS_PER_ENTRY = 25000;
+    public static final String MAX_HEAP_MB_PROPERTY             = "pm.scale.max.heap.mb";
+    public static final long   DEFAULT_MAX_HEAP_MB              = 8;
+    public static final String MAX_HEAP_BYTES_PER_ENTRY_PROPERTY = "pm.scale.max.heap.bytes.per.entry";
+    public static final long   DEFAULT_MAX_HEAP_BYTES_PER_ENTRY = 1200;
+    public static final String MAX_RETAINED_MB_PROPERTY         = "pm.scale.max.retained.mb";
+    public static final long   DEFAULT_MAX_RETAINED_MB          = 2;
+    public static final String MAX_RETAINED_BYTES_PER_ENTRY_PROPERTY = "pm.scale.max.retained.bytes.per.entry";
+    public static final long   DEFAULT_MAX_RETAINED_BYTES_PER_ENTRY = 300;
+    public static final String FUZZ_ITERATIONS_PROPERTY         = "pm.fuzz.iterations";
+    public static final long   DEFAULT_FUZZ_ITERATIONS          = 200;
+    public static final String THREADS_PROPERTY                 = "pm.concurrency.threads";
+    public static final long   DEFAULT_THREADS                  = 4;
+    public static final String CONCURRENCY_MILLIS_PROPERTY      = "pm.concurrency.millis";
+    public static final long   DEFAULT_CONCURRENCY_MILLIS       = 1000;
+
+    // WHAT THE GENERATED FILES ARE CALLED IN THE TEMPORARY DATA PATH
+    public static final String SCALE_XML_FILE   = "scale_test_properties.xml";
+    public static final String FUZZ_XML_FILE    = "fuzz_test_properties.xml";
+
+    // THE SIZE OF THE FILES USED FOR THE TESTS THAT AREN'T ABOUT SIZE
+    public static final int SMALL_NUM_PROPERTIES = 100;
+
+    // FOR THE CONCURRENCY TEST, THESE ARE ALWAYS CHANGED TOGETHER
+    public static final String PAIRED_PROPERTY_A = "PAIRED_A";
+    public static final String PAIRED_PROPERTY_B = "PAIRED_B";
+    public static final String PAIRED_OPTIONS = "PAIRED_OPTIONS";
+
+    /**
+     * This JUnit test loads generated files of each size in both loading
+     * modes, checks that everything is there, and checks the load time
+     * and heap used against the limits.
+     */
+    @Test
+    public void testLoadAtScale() {
+        PropertiesManager props = PropertiesManager.getPropertiesManager();
+        String oldDataPath = props.getPropertiesDataPath();
+        Path dataPath = null;
+        try {
+            dataPath = Files.createTempDirectory("pm_scale");
+            props.setPropertiesDataPath(dataPath.toString());
+            for (String size : System.getProperty(SIZES_PROPERTY, DEFAULT_SIZES).split(",")) {
+                PropertiesDataGenerator generator = new PropertiesDataGenerator(Long.getLong(SEED_PROPERTY, DEFAULT_SEED));
+                generator.setNumProperties(Integer.parseInt(size.trim()));
+                Path file = dataPath.resolve(SCALE_XML_FILE);
+                generator.write(file);
+                for (boolean lazy : new boolean[]{false, true}) {
+                    checkLoad(props, generator, lazy);
+                }
+                Files.delete(file);
+            }
+        }
+        catch (Exception ex) {
+            ex.printStackTrace();
+            Assert.fail(ex.toString());
+        }
+        finally {
+            props.clear();
+            props.setLazyLoading(false);
+            props.setPropertiesDataPath(oldDataPath);
+            deleteQuietly(dataPath);
+        }
+    }
+
+    // LOADS THE GENERATED FILE, MEASURING AS IT GOES, AND CHECKS IT
+    private void checkLoad(PropertiesManager props, PropertiesDataGenerator generator, boolean lazy)
+            throws InvalidXMLFileFormatException {
+        int numProperties = generator.getNumProperties();
+        props.clear();
+        props.setLazyLoading(lazy);
+        long heapBefore = getUsedHeapAfterGC();
+        resetPeakHeap();
+        long startTime = System.nanoTime();
+        props.loadProperties(SCALE_XML_FILE);
+        long loadNanos = System.nanoTime() - startTime;
+        long peakHeap = getPeakHeap() - heapBefore;
+        long retainedHeap = getUsedHeapAfterGC() - heapBefore;
+        String measured = numProperties + " properties, " + (lazy ? "lazy" : "eager") + ": "
+                + loadNanos / 1000000 + " ms, peak heap " + peakHeap / 1024 + " KB, retained heap "
+                + retainedHeap / 1024 + " KB";
+
+        // EVERYTHING SHOULD BE THERE, WITH THE RIGHT VALUES
+        Assert.assertEquals(numProperties, props.getNumProperties());
+        Assert.assertEquals(generator.getNumOptionsLists(), props.getNumPropertyOptionsLists());
+        for (int i = 0; i < numProperties; i++) {
+            Assert.assertEquals(generator.getPropertyValue(i), props.getProperty(generator.getPropertyName(i)));
+        }
+        for (int i = 0; i < generator.getNumOptionsLists(); i++) {
+            Assert.assertEquals(generator.getOptions(i), props.getPropertyOptionsList(generator.getOptionsListName(i)));
+        }
+        if (lazy) {
+            int last = numProperties - 1;
+            PropertySource source = props.getPropertySource(generator.getPropertyName(last));
+            Assert.assertEquals(generator.getPropertyLineNumber(last), source.getLineNumber());
+        }
+
+        // AND IT SHOULDN'T HAVE TAKEN TOO LONG OR USED TOO MUCH
+        long maxLoadNanos = Long.getLong(MAX_LOAD_MILLIS_PROPERTY, DEFAULT_MAX_LOAD_MILLIS) * 1000000
+                + Long.getLong(MAX_LOAD_NANOS_PER_ENTRY_PROPERTY, DEFAULT_MAX_LOAD_NANOS_PER_ENTRY) * numProperties;
+        long maxPeakHeap = Long.getLong(MAX_HEAP_MB_PROPERTY, DEFAULT_MAX_HEAP_MB) * 1024 * 1024
+                + Long.getLong(MAX_HEAP_BYTES_PER_ENTRY_PROPERTY, DEFAULT_MAX_HEAP_BYTES_PER_ENTRY) * numProperties;
+        long maxRetainedHeap = Long.getLong(MAX_RETAINED_MB_PROPERTY, DEFAULT_MAX_RETAINED_MB) * 1024 * 1024
+                + Long.getLong(MAX_RETAINED_BYTES_PER_ENTRY_PROPERTY, DEFAULT_MAX_RETAINED_BYTES_PER_ENTRY) * numProperties;
+        Assert.assertTrue(measured + ", more than the " + maxLoadNanos / 1000000 + " ms allowed",
+                loadNanos <= maxLoadNanos);
+        Assert.assertTrue(measured + ", more than the " + maxPeakHeap / 1024 + " KB of peak heap allowed",
+                peakHeap <= maxPeakHeap);
+        Assert.assertTrue(measured + ", more than the " + maxRetainedHeap / 1024 + " KB of retained heap allowed",
+                retainedHeap <= maxRetainedHeap);
+    }
+
+    /**
+     * This JUnit test makes sure each kind of broken file is rejected in
+     * both loading modes, and that validation says where the problem is.
+     */
+    @Test
+    public void testMalformedFiles() {
+        PropertiesManager props = PropertiesManager.getPropertiesManager();
+        String oldDataPath = props.getPropertiesDataPath();
+        Path dataPath = null;
+        try {
+            dataPath = Files.createTempDirectory("pm_malformed");
+            props.setPropertiesDataPath(dataPath.toString());
+            PropertiesDataGenerator generator = new PropertiesDataGenerator(Long.getLong(SEED_PROPERTY, DEFAULT_SEED));
+            generator.setNumProperties(SMALL_NUM_PROPERTIES);
+            int malformedLine = generator.getPropertyLineNumber(generator.getMalformedPropertyIndex());
+            for (PropertiesDataGenerator.Malformation malformation : PropertiesDataGenerator.Malformation.values()) {
+                generator.write(dataPath.resolve(FUZZ_XML_FILE), malformation);
+                ValidationResult result = props.validateProperties(FUZZ_XML_FILE, true);
+                Assert.assertFalse(malformation.toString(), result.isValid());
+                ValidationError error = result.getFirstError();
+                switch (malformation) {
+                    case MISSING_NAME:
+                    case MISSING_VALUE:
+                    case UNDEFINED_ENTITY:
+                        Assert.assertEquals(malformation.toString(), malformedLine, error.getLineNumber());
+                        break;
+                    case UNCLOSED_ELEMENT:
+                        Assert.assertEquals(ValidationError.Severity.FATAL_ERROR, error.getSeverity());
+                        break;
+                    default:
+                }
+                for (boolean lazy : new boolean[]{false, true}) {
+                    props.clear();
+                    props.setLazyLoading(lazy);
+                    try {
+                        props.loadProperties(FUZZ_XML_FILE);
+                        Assert.fail(malformation + " file should not have loaded");
+                    }
+                    catch (InvalidXMLFileFormatException ixffe) {
+                        Assert.assertEquals(0, props.getNumProperties());
+                    }
+                }
+            }
+        }
+        catch (Exception ex) {
+            ex.printStackTrace();
+            Assert.fail(ex.toString());
+        }
+        finally {
+            props.clear();
+            props.setLazyLoading(false);
+            props.setPropertiesDataPath(oldDataPath);
+            deleteQuietly(dataPath);
+        }
+    }
+
+    /**
+     * This JUnit test damages a generated file in random ways and loads
+     * it in both loading modes. Either both must reject it with an
+     * InvalidXMLFileFormatException, or both must load exactly the same
+     * properties, anything else is a bug. The seed for each round is
+     * printed when it fails so that it can be tried again.
+     */
+    @Test
+    public void testFuzzedFiles() {
+        PropertiesManager props = PropertiesManager.getPropertiesManager();
+        String oldDataPath = props.getPropertiesDataPath();
+        Path dataPath = null;
+        long roundSeed = 0;
+        try {
+            dataPath = Files.createTempDirectory("pm_fuzz");
+            props.setPropertiesDataPath(dataPath.toString());
+            long seed = Long.getLong(SEED_PROPERTY, DEFAULT_SEED);
+            PropertiesDataGenerator generator = new PropertiesDataGenerator(seed);
+            generator.setNumProperties(SMALL_NUM_PROPERTIES);
+            generator.setValueLength(4);
+            generator.setNumOptionsLists(3);
+            Path file = dataPath.resolve(FUZZ_XML_FILE);
+            generator.write(file);
+            byte[] original = Files.readAllBytes(file);
+            long iterations = Long.getLong(FUZZ_ITERATIONS_PROPERTY, DEFAULT_FUZZ_ITERATIONS);
+            for (long round = 0; round < iterations; round++) {
+                roundSeed = seed * 31 + round;
+                Files.write(file, mutate(original, new Random(roundSeed)));
+                String eager = loadForComparison(props, false);
+                String lazy = loadForComparison(props, true);
+                Assert.assertEquals("Fuzz round with seed " + roundSeed, eager, lazy);
+            }
+        }
+        catch (Exception ex) {
+            ex.printStackTrace();
+            Assert.fail("Fuzz round with seed " + roundSeed + ": " + ex);
+        }
+        finally {
+            props.clear();
+            props.setLazyLoading(false);
+            props.setPropertiesDataPath(oldDataPath);
+            deleteQuietly(dataPath);
+        }
+    }
+
+    // DAMAGES A COPY OF THE FILE IN ONE OF A FEW WAYS, AIMING MOSTLY AT
+    // THE MARKUP SINCE DAMAGED TEXT IS USUALLY STILL VALID
+    private byte[] mutate(byte[] original, Random random) {
+        byte[] mutated = original.clone();
+        int position = random.nextInt(original.length);
+        switch (random.nextInt(5)) {
+            case 0:
+                // CUT IT SHORT
+                return Arrays.copyOf(original, position);
+            case 1:
+                // CHANGE SOME BYTES TO OTHER BYTES THAT MATTER TO XML
+                byte[] markup = "<>/\"'&;=! \n#xA[]-?".getBytes();
+                for (int i = random.nextInt(4); i >= 0; i--) {
+                    mutated[random.nextInt(mutated.length)] = markup[random.nextInt(markup.length)];
+                }
+                return mutated;
+            case 2:
+                // FLIP SOME BITS, WHICH MAY BREAK THE UTF-8
+                for (int i = random.nextInt(4); i >= 0; i--) {
+                    mutated[random.nextInt(mutated.length)] ^= 1 << random.nextInt(8);
+                }
+                return mutated;
+            case 3:
+                // TAKE A PIECE OUT
+                int length = random.nextInt(Math.min(64, original.length - position) + 1);
+                byte[] shorter = new byte[original.length - length];
+                System.arraycopy(original, 0, shorter, 0, position);
+                System.arraycopy(original, position + length, shorter, position, shorter.length - position);
+                return shorter;
+            default:
+                // REPEAT A PIECE, WHICH MAY DUPLICATE PROPERTIES
+                int repeatLength = random.nextInt(Math.min(256, original.length - position) + 1);
+                byte[] longer = new byte[original.length + repeatLength];
+                System.arraycopy(original, 0, longer, 0, position + repeatLength);
+                System.arraycopy(original, position, longer, position + repeatLength, original.length - position);
+                return longer;
+        }
+    }
+
+    // LOADS THE FUZZ FILE AND DESCRIBES WHAT WAS LOADED IN A WAY THAT DOESN'T
+    // DEPEND ON ORDER, OR SAYS IT WAS REJECTED, ANY OTHER EXCEPTION FAILS
+    private String loadForComparison(PropertiesManager props, boolean lazy) throws Exception {
+        props.clear();
+        props.setLazyLoading(lazy);
+        try {
+            props.loadProperties(FUZZ_XML_FILE);
+        }
+        catch (InvalidXMLFileFormatException ixffe) {
+            return "rejected";
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        props.exportProperties(Channels.newChannel(out));
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(out.toByteArray()));
+        HashMap<String, Object> loaded = new HashMap<>();
+        NodeList propertyNodes = doc.getElementsByTagName(PROPERTY_ELEMENT);
+        for (int i = 0; i < propertyNodes.getLength(); i++) {
+            Element property = (Element)propertyNodes.item(i);
+            loaded.put(property.getAttribute(NAME_ATT), property.getAttribute(VALUE_ATT));
+        }
+        NodeList optionsNodes = doc.getElementsByTagName(PROPERTY_OPTIONS_ELEMENT);
+        for (int i = 0; i < optionsNodes.getLength(); i++) {
+            Element optionsList = (Element)optionsNodes.item(i);
+            ArrayList<String> options = new ArrayList<>();
+            NodeList optionNodes = optionsList.getElementsByTagName(OPTION_ELEMENT);
+            for (int j = 0; j < optionNodes.getLength(); j++) {
+                options.add(optionNodes.item(j).getTextContent());
+            }
+            loaded.put("options " + optionsList.getAttribute(NAME_ATT), options);
+        }
+        return new TreeMap<>(loaded).toString();
+    }
+
+    /**
+     * This JUnit test has several threads looking up properties while
+     * another thread keeps reloading the file and applying batches. Every
+     * lookup must find the right value, and every snapshot must have all
+     * or none of the changes made by each batch. Since each batch has a
+     * larger round number than the one before, reading one of its changes
+     * and then another must never find the second from an earlier batch.
+     */
+    @Test
+    public void testConcurrentLookups() {
+        final PropertiesManager props = PropertiesManager.getPropertiesManager();
+        String oldDataPath = props.getPropertiesDataPath();
+        Path dataPath = null;
+        try {
+            dataPath = Files.createTempDirectory("pm_concurrency");
+            props.setPropertiesDataPath(dataPath.toString());
+            final PropertiesDataGenerator generator = new PropertiesDataGenerator(Long.getLong(SEED_PROPERTY, DEFAULT_SEED));
+            generator.write(dataPath.resolve(SCALE_XML_FILE));
+            props.clear();
+            props.setLazyLoading(true);
+            props.loadProperties(SCALE_XML_FILE);
+
+            final long endTime = System.currentTimeMillis() + Long.getLong(CONCURRENCY_MILLIS_PROPERTY, DEFAULT_CONCURRENCY_MILLIS);
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+            ArrayList<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < Long.getLong(THREADS_PROPERTY, DEFAULT_THREADS); t++) {
+                final int threadNumber = t;
+                threads.add(new Thread(() -> {
+                    try {
+                        Random random = new Random(threadNumber);
+                        while ((System.currentTimeMillis() < endTime) && (failure.get() == null)) {
+                            int i = random.nextInt(generator.getNumProperties());
+                            Assert.assertEquals(generator.getPropertyValue(i), props.getProperty(generator.getPropertyName(i)));
+                            int j = random.nextInt(generator.getNumOptionsLists());
+                            Assert.assertEquals(generator.getOptions(j), props.getPropertyOptionsList(generator.getOptionsListName(j)));
+                            PropertiesSnapshot snapshot = props.getSnapshot();
+                            Assert.assertEquals(snapshot.getProperty(PAIRED_PROPERTY_A), snapshot.getProperty(PAIRED_PROPERTY_B));
+                            if (snapshot.getPropertyOptionsView(PAIRED_OPTIONS) != null) {
+                                Assert.assertEquals(snapshot.getProperty(PAIRED_PROPERTY_A), snapshot.getPropertyOptionsView(PAIRED_OPTIONS).get(0));
+                            }
+                            snapshot.release();
+                            String pairedValue = props.getProperty(PAIRED_PROPERTY_A);
+                            PropertyOptionsList pairedOptions = props.getPropertyOptionsView(PAIRED_OPTIONS);
+                            if (pairedValue != null) {
+                                Assert.assertTrue(Integer.parseInt(pairedOptions.get(0)) >= Integer.parseInt(pairedValue));
+                            }
+                        }
+                    }
+                    catch (Throwable th) {
+                        failure.compareAndSet(null, th);
+                    }
+                }));
+            }
+            threads.add(new Thread(() -> {
+                try {
+                    for (int round = 0; (System.currentTimeMillis() < endTime) && (failure.get() == null); round++) {
+                        if (round % 8 == 0) {
+                            props.loadProperties(SCALE_XML_FILE);
+                        }
+                        PropertiesBatch batch = new PropertiesBatch();
+                        batch.addProperty(PAIRED_PROPERTY_A, "" + round);
+                        batch.addProperty(PAIRED_PROPERTY_B, "" + round);
+                        batch.addPropertyOptionsList(PAIRED_OPTIONS, new ArrayList<>(Arrays.asList("" + round)));
+                        props.applyBatch(batch);
+                    }
+                }
+                catch (Throwable th) {
+                    failure.compareAndSet(null, th);
+                }
+            }));
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            if (failure.get() != null) {
+                failure.get().printStackTrace();
+                Assert.fail(failure.get().toString());
+            }
+        }
+        catch (Exception ex) {
+            ex.printStackTrace();
+            Assert.fail(ex.toString());
+        }
+        finally {
+            props.clear();
+            props.setLazyLoading(false);
+            props.setPropertiesDataPath(oldDataPath);
+            deleteQuietly(dataPath);
+        }
+    }
+
+    // THE HEAP IN USE ONCE THE GARBAGE IS GONE, AS BEST WE CAN TELL
+    private static long getUsedHeapAfterGC() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    // NOTE THE POOLS MAY PEAK AT DIFFERENT TIMES, SO THIS IS AN UPPER BOUND
+    private static long getPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static void deleteQuietly(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        try {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Object file : files.toArray()) {
+                    Files.delete((Path)file);
+                }
+            }
+            Files.delete(dir);
+        }
+        catch (Exception ex) {
+            // IT'S IN THE TEMPORARY DIRECTORY, SO IT WILL GO EVENTUALLY
+        }
+    }
+}
@@ -1,10 +1,29 @@
 package junit_test_beds;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Random;
 import static junit_test_beds.XMLU_Unit_Tests.VALID_XML_RESOURCE_PATH;
 import org.junit.Assert;
 import org.junit.Test;
+import properties_manager.InvalidXMLFileFormatException;
+import properties_manager.PropertiesBatch;
+import properties_manager.PropertiesBundle;
 import properties_manager.PropertiesManager;
+import properties_manager.PropertiesSnapshot;
+import properties_manager.PropertyConflict;
+import properties_manager.PropertyOptionsList;
+import properties_manager.PropertySource;
 
 /**
  * PM_Unit_Tests.java
@@ -29,6 +48,22 @@ public class PM_Unit_Tests {
     public static final String MARCH    = "March";
     public static final String MONDAY   = "Monday";
     public static final String TUESDAY  = "Tuesday";
+    public static final String TRICKY_STRING = "<\"Fish & Chips\">\n\tfor \u00e9l\u00e8ve \ud83d\ude00";
+    public static final String SAVED_XML_FILE = "saved_test_properties.xml";
+    public static final String OVERRIDE_XML_RESOURCE_PATH = "data/override_test_properties.xml";
+    public static final String INTERPOLATION_XML_RESOURCE_PATH = "data/interpolation_test_properties.xml";
+    public static final String API_URL      = "API_URL";
+    public static final String BASE_URL     = "BASE_URL";
+    public static final String HOST         = "HOST";
+    public static final String PORT         = "PORT";
+    public static final String MISSING_URL  = "MISSING_URL";
+    public static final String STRINGS_BUNDLE = "data/strings";
+    public static final String GREETING     = "GREETING";
+    public static final String FAREWELL     = "FAREWELL";
+    public static final String COLOR        = "COLOR";
+    public static final String MONTHS       = "MONTHS";
+    public static final String SEASONS      = "SEASONS";
+    public static final long SEED = 20261019;
          
     /**
      * This JUnit test is for testing the loading of a properties
@@ -132,4 +167,710 @@ public class PM_Unit_Tests {
             Assert.fail();
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * This JUnit test is for testing that adding a null options list is
+     * refused and leaves the list that was there alone.
+     */
+    @Test
+    public void testAddNullPropertyOptions() {
+        PropertiesManager props = PropertiesManager.getPropertiesManager();
+        try {
+            props.setPropertiesDataPath(UNIT_TEST_PATH);
+            props.clear();
+            props.loadProperties(VALID_XML_RESOURCE_PATH);
+            long version = props.getVersion();
+            try {
+                props.addPropertyOptionsList(MY_STRING_OPTIONS, null);
+                Assert.fail();
+            }
+            catch (NullPointerException npe) {
+                // EXPECTED
+            }
+            Assert.assertEquals(version, props.getVersion());
+            Assert.assertEquals(JANUARY, props.getPropertyOptionsView(MY_STRING_OPTIONS).get(0));
+            
+            PropertiesBatch batch = new PropertiesBatch();
+            try {
+                batch.addPropertyOptionsList(MY_STRING_OPTIONS, null);
+                Assert.fail();
+            }
+            catch (NullPointerException npe) {
+                // EXPECTED
+            }
+        }
+        catch (Exception ex) {
+            Assert.fail();
+        }
+        finally {
+            props.clear();
+        }
+    }
+    
+    /**
+     * This JUnit test is for testing the immutable options list views,
+     * which should be shared and should not see changes made to lists
+     * handed to or gotten from the manager.
+     */
+    @Test
+    public void testPropertyOptionsView() {
+        try {
+            PropertiesManager props = PropertiesManager.getPropertiesManager();
+            props.setPropertiesDataPath(UNIT_TEST_PATH);
+            props.loadProperties(VALID_XML_RESOURCE_PATH);
+            PropertyOptionsList view = props.getPropertyOptionsView(MY_STRING_OPTIONS);
+            Assert.assertSame(view, props.getPropertyOptionsView(MY_STRING_OPTIONS));
+            Assert.assertEquals(3, view.size());
+            Assert.assertEquals(FEBRUARY, view.get(1));
+            Assert.assertEquals(2, view.indexOf(MARCH));
+            Assert.assertEquals(-1, view.indexOf(MONDAY));
+            
+            // CHANGING A COPY SHOULD NOT CHANGE THE MANAGER'S LIST
+            ArrayList<String> copy = props.getPropertyOptionsList(MY_STRING_OPTIONS);
+            copy.clear();
+            Assert.assertEquals(3, props.getPropertyOptionsView(MY_STRING_OPTIONS).size());
+            
+            // NOR SHOULD CHANGING A LIST AFTER IT'S ADDED
+            ArrayList<String> bigList = new ArrayList<>();
+            for (int i = 0; i < PropertyOptionsList.INDEX_THRESHOLD * 2; i++) {
+                bigList.add("OPTION_" + i);
+            }
+            bigList.add("OPTION_0");
+            props.addPropertyOptionsList(MY_STRING_OPTIONS, bigList);
+            bigList.clear();
+            view = props.getPropertyOptionsView(MY_STRING_OPTIONS);
+            Assert.assertEquals(PropertyOptionsList.INDEX_THRESHOLD * 2 + 1, view.size());
+            Assert.assertEquals(0, view.indexOf("OPTION_0"));
+            Assert.assertEquals(5, view.indexOf("OPTION_5"));
+            try {
+                view.add(JANUARY);
+                Assert.fail("Options views should not be modifiable");
+            }
+            catch (UnsupportedOperationException uoe) {
+                Assert.assertTrue(true);
+            }
+        }
+        catch (Exception ex) {
+            Assert.fail();
+        }
+    }
+    
+    /**
+     * This JUnit test is for testing that saving properties as XML and
+     * loading them back in gets back exactly what was saved.
+     */
+    @Test
+    public void testSaveAndReloadProperties() {
+        try {
+            PropertiesManager props = PropertiesManager.getPropertiesManager();
+            props.setPropertiesDataPath(UNIT_TEST_PATH);
+            props.clear();
+            props.loadProperties(VALID_XML_RESOURCE_PATH);
+            props.addProperty(MY_STRING_2, TRICKY_STRING);
+            ArrayList<String> options = new ArrayList<>();
+            options.add(TRICKY_STRING);
+            props.addPropertyOptionsList(MY_STRING_OPTIONS_2, options);
+            
+            // SAVE IT ALL SOMEWHERE WE CAN THROW AWAY
+            Path tempDir = Files.createTempDirectory("pm_test");
+            props.setPropertiesDataPath(tempDir.toString());
+            props.saveProperties(SAVED_XML_FILE);
+            
+            // AND LOAD IT BACK
+            props.clear();
+            props.loadProperties(SAVED_XML_FILE);
+            Assert.assertEquals(2, props.getNumProperties());
+            Assert.assertEquals(TEST_STRING, props.getProperty(MY_STRING));
+            Assert.assertEquals(TRICKY_STRING, props.getProperty(MY_STRING_2));
+            Assert.assertEquals(FEBRUARY, props.getPropertyOptionsView(MY_STRING_OPTIONS).get(1));
+            Assert.assertEquals(TRICKY_STRING, props.getPropertyOptionsView(MY_STRING_OPTIONS_2).get(0));
+            Files.delete(tempDir.resolve(SAVED_XML_FILE));
+            Files.delete(tempDir);
+        }
+        catch (Exception ex) {
+            Assert.fail();
+        }
+    }
+    
+    /**
+     * This JUnit test is for testing that exporting properties in the binary
+     * format and importing them back in gets back exactly what was exported.
+     */
+    @Test
+    public void testExportAndImportBinaryProperties() {
+        try {
+            PropertiesManager props = PropertiesManager.getPropertiesManager();
+            props.setPropertiesDataPath(UNIT_TEST_PATH);
+            props.clear();
+            props.loadProperties(VALID_XML_RESOURCE_PATH);
+            props.addProperty(MY_STRING_2, TRICKY_STRING);
+            
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            props.exportBinaryProperties(Channels.newChannel(out));
+            props.clear();
+            props.importBinaryProperties(Channels.newChannel(new ByteArrayInputStream(out.toByteArray())));
+            Assert.assertEquals(2, props.getNumProperties());
+            Assert.assertEquals(2, props.getNumPropertyOptionsLists());
+            Assert.assertEquals(TEST_STRING, props.getProperty(MY_STRING));
+            Assert.assertEquals(TRICKY_STRING, props.getProperty(MY_STRING_2));
+            Assert.assertEquals(TUESDAY, props.getPropertyOptionsView(MY_STRING_OPTIONS_2).get(1));
+        }
+        catch (Exception ex) {
+            Assert.fail();
+        }
+    }
+    
+    /**
+     * This JUnit test is for testing that null properties and options are
+     * kept by the binary format and refused by the XML one, and that bad
+     * lengths in binary data are reported rather than believed.
+     */
+    @Test
+    public void testNullsAndBadBinaryData() {
+        PropertiesManager props = PropertiesManager.getPropertiesManager();
+        try {
+            props.setPropertiesDataPath(UNIT_TEST_PATH);
+            props.clear();
+            StringBuilder longValue = new StringBuilder();
+            for (int i = 0; i < 5000; i++) {
+                longValue.append("\u00e9t\u00e9 ");
+            }
+            props.addProperty(MY_STRING, null);
+            props.addProperty(MY_STRING_2, longValue.toString());
+            ArrayList<String> options = new ArrayList<>();
+            options.add(JANUARY);
+            options.add(null);
+            props.addPropertyOptionsList(MY_STRING_OPTIONS, options);
+            
+            // XML CAN'T HOLD A null, SO NOTHING SHOULD BE WRITTEN
+            ByteArrayOutputStream xmlOut = new ByteArrayOutputStream();
+            try {
+                props.exportProperties(Channels.newChannel(xmlOut));
+                Assert.fail();
+            }
+            catch (IOException ioe) {
+                Assert.assertTrue(ioe.getMessage().contains(MY_STRING));
+            }
+            Assert.assertEquals(0, xmlOut.size());
+            
+            // BUT BINARY CAN
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            props.exportBinaryProperties(Channels.newChannel(out));
+            props.clear();
+            props.importBinaryProperties(Channels.newChannel(new ByteArrayInputStream(out.toByteArray())));
+            Assert.assertTrue(props.hasProperty(MY_STRING));
+            Assert.assertNull(props.getProperty(MY_STRING));
+            Assert.assertEquals(longValue.toString(), props.getProperty(MY_STRING_2));
+            Assert.assertEquals(options, props.getPropertyOptionsView(MY_STRING_OPTIONS));
+            
+            // A STRING THAT SAYS IT'S ALMOST 2 GB, BUT ISN'T THERE. THE HEADER
+            // IS THE MAGIC NUMBER AND FORMAT VERSION, THEN A PROPERTY RECORD
+            ByteBuffer hostile = ByteBuffer.allocate(18);
+            hostile.putInt(0x504D4250).put((byte)2);
+            hostile.put((byte)1).putInt(4).put("NAME".getBytes(StandardCharsets.UTF_8));
+            hostile.putInt(0x7FFFFFF0);
+            try {
+                props.importBinaryProperties(Channels.newChannel(new ByteArrayInputStream(hostile.array())));
+                Assert.fail();
+            }
+            catch (IOException ioe) {
+                // EXPECTED
+            }
+            Path badFile = Files.createTempFile("pm_test", ".bin");
+            try {
+                Files.write(badFile, hostile.array());
+                try (FileChannel channel = FileChannel.open(badFile)) {
+                    props.importBinaryProperties(channel);
+                    Assert.fail();
+                }
+                catch (IOException ioe) {
+                    Assert.assertTrue(ioe.getMessage().startsWith("Invalid string length"));
+                }
+            }
+            finally {
+                Files.delete(badFile);
+            }
+            Assert.assertFalse(props.hasProperty("NAME"));
+        }
+        catch (Exception ex) {
+            Assert.fail();
+        }
+        finally {
+            props.clear();
+        }
+    }
+    
+    /**
+     * This JUnit test is for testing that snapshots keep seeing the
+     * properties as they were when the snapshot was taken.
+     */
+    @Test
+    public void testSnapshots() {
+        try {
+            PropertiesManager props = PropertiesManager.getPropertiesManager();
+            props.setPropertiesDataPath(UNIT_TEST_PATH);
+            props.clear();
+            props.loadProperties(VALID_XML_RESOURCE_PATH);
+            PropertiesSnapshot snapshot = props.getSnapshot();
+            Assert.assertEquals(props.getVersion(), snapshot.getVersion());
+            
+            // CHANGE EVERYTHING IN THE MANAGER
+            props.addProperty(MY_STRING, TEST_STRING_2);
+            props.removeProperty(MY_STRING_2);
+            props.removePropertyOptionsList(MY_STRING_OPTIONS);
+            Assert.assertTrue(props.getVersion() > snapshot.getVersion());
+            Assert.assertEquals(TEST_STRING_2, props.getProperty(MY_STRING));
+            
+            // BUT THE SNAPSHOT SHOULDN'T HAVE CHANGED
+            Assert.assertEquals(TEST_STRING, snapshot.getProperty(MY_STRING));
+            Assert.assertEquals(TEST_STRING_2, snapshot.getProperty(MY_STRING_2));
+            Assert.assertEquals(2, snapshot.getNumPropertyOptionsLists());
+            Assert.assertEquals(JANUARY, snapshot.getPropertyOptionsView(MY_STRING_OPTIONS).get(0));
+            
+            // A SNAPSHOT TAKEN AFTER CLEARING SHOULD BE EMPTY
+            props.clear();
+            PropertiesSnapshot emptySnapshot = props.getSnapshot();
+            Assert.assertEquals(0, emptySnapshot.getNumProperties());
+            Assert.assertEquals(TEST_STRING, snapshot.getProperty(MY_STRING));
+            
+            // AND ONCE RELEASED IT CAN'T BE READ
+            snapshot.release();
+            emptySnapshot.release();
+            Assert.assertTrue(snapshot.isReleased());
+            try {
+                snapshot.getProperty(MY_STRING);
+                Assert.fail("Released snapshots should not be readable");
+            }
+            catch (IllegalStateException ise) {
+                Assert.assertTrue(true);
+            }
+        }
+        catch (Exception ex) {
+            Assert.fail();
+        }
+    }
+    
+    /**
+     * This JUnit test is for testing that lots of changes, some with
+     * names that have the same hash code, leave the manager and every
+     * snapshot taken along the way with exactly what they should have.
+     */
+    @Test
+    public void testManyChangesAndSnapshots() {
+        try {
+            PropertiesManager props = PropertiesManager.getPropertiesManager();
+            props.clear();
+            props.setInterpolating(false);
+            Random random = new Random(SEED);
+            
+            // "Aa" AND "BB" HAVE THE SAME HASH CODE, SO THESE ALL DO TOO
+            ArrayList<String> names = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                StringBuilder name = new StringBuilder();
+                for (int bit = 0; bit < 6; bit++) {
+                    name.append((i & (1 << bit)) == 0 ? "Aa" : "BB");
+                }
+                names.add(name.toString());
+            }
+            for (int i = 0; i < 2000; i++) {
+                names.add("NAME_" + i);
+            }
+            
+            HashMap<String, String> expected = new HashMap<>();
+            ArrayList<PropertiesSnapshot> snapshots = new ArrayList<>();
+            ArrayList<HashMap<String, String>> expectedSnapshots = new ArrayList<>();
+            for (int i = 0; i < 20000; i++) {
+                String name = names.get(random.nextInt(names.size()));
+                if (random.nextInt(3) == 0) {
+                    props.removeProperty(name);
+                    expected.remove(name);
+                }
+                else {
+                    props.addProperty(name, "Value " + i);
+                    expected.put(name, "Value " + i);
+                }
+                if (i % 2000 == 0) {
+                    snapshots.add(props.getSnapshot());
+                    expectedSnapshots.add(new HashMap<>(expected));
+                }
+            }
+            Assert.assertEquals(expected.size(), props.getNumProperties());
+            for (String name : names) {
+                Assert.assertEquals(expected.get(name), props.getProperty(name));
+                Assert.assertEquals(expected.containsKey(name), props.hasProperty(name));
+            }
+            for (int i = 0; i < snapshots.size(); i++) {
+                PropertiesSnapshot snapshot = snapshots.get(i);
+                HashMap<String, String> expectedSnapshot = expectedSnapshots.get(i);
+                Assert.assertEquals(expectedSnapshot.size(), snapshot.getNumProperties());
+                for (String name : names) {
+                    Assert.assertEquals(expectedSnapshot.get(name), snapshot.getProperty(name));
+                }
+                snapshot.release();
+            }
+            
+            // AND WHAT'S EXPORTED SHOULD BE EVERYTHING, ONCE
+            ByteArrayOutputStream exported = new ByteArrayOutputStream();
+            props.exportBinaryProperties(Channels.newChannel(exported));
+            props.clear();
+            props.importBinaryProperties(Channels.newChannel(new ByteArrayInputStream(exported.toByteArray())));
+            Assert.assertEquals(expected.size(), props.getNumProperties());
+            for (String name : names) {
+                Assert.assertEquals(expected.get(name), props.getProperty(name));
+            }
+        }
+        catch (Exception ex) {
+            Assert.fail();
+        }
+    }
+
+    /**
+     * This JUnit test is for testing that loading in lazy mode gives
+     * the same properties and lists as loading the normal way.
+     */
+    @Test
+    public void testLazyLoadProperties() {
+        PropertiesManager props = PropertiesManager.getPropertiesManager();
+        try {
+            props.setPropertiesDataPath(UNIT_TEST_PATH);
+            props.clear();
+            props.setLazyLoading(true);
+            props.loadProperties(VALID_XML_RESOURCE_PATH);
+            Assert.assertEquals(2, props.getNumProperties());
+            Assert.assertTrue(props.hasProperty(MY_STRING_2));
+            Assert.assertEquals(TEST_STRING, props.getProperty(MY_STRING));
+            Assert.assertEquals(TEST_STRING_2, props.getProperty(MY_STRING_2));
+            Assert.assertEquals(MARCH, props.getPropertyOptionsView(MY_STRING_OPTIONS).get(2));
+            Assert.assertEquals(TUESDAY, props.getPropertyOptionsView(MY_STRING_OPTIONS_2).get(1));
+            
+            // REPLACING AND REMOVING LAZY PROPERTIES WORKS AS USUAL
+            props.addProperty(MY_STRING, TEST_STRING_2);
+            props.removeProperty(MY_STRING_2);
+            Assert.assertEquals(TEST_STRING_2, props.getProperty(MY_STRING));
+            Assert.assertEquals(null, props.getProperty(MY_STRING_2));
+            Assert.assertEquals(1, props.getNumProperties());
+        }
+        catch (Exception ex) {
+            Assert.fail();
+        }
+        finally {
+            props.setLazyLoading(false);
+        }
+    }
+    
+    /**
+     * This JUnit test is for testing that the manager keeps track of where
+     * properties were loaded from and what was overridden, in both modes.
+     */
+    @Test
+    public void testPropertySourcesAndConflicts() {
+        PropertiesManager props = PropertiesManager.getPropertiesManager();
+        try {
+            for (boolean lazy : new boolean[] {false, true}) {
+                props.setPropertiesDataPath(UNIT_TEST_PATH);
+                props.clear();
+                props.setLazyLoading(lazy);
+                props.addProperty(MY_STRING_2, TEST_STRING);
+                props.loadProperties(VALID_XML_RESOURCE_PATH);
+                
+                // MY_STRING_2 WAS ADDED BY CODE BEFORE IT WAS LOADED
+                ArrayList<PropertyConflict> conflicts = props.getPropertyConflicts();
+                Assert.assertEquals(1, conflicts.size());
+                Assert.assertEquals(MY_STRING_2, conflicts.get(0).getName());
+                Assert.assertNull(conflicts.get(0).getOverriddenSource());
+                
+                PropertySource source = props.getPropertySource(MY_STRING);
+                Assert.assertTrue(source.getFileName().endsWith(VALID_XML_RESOURCE_PATH));
+                Assert.assertEquals(lazy, source.hasLineNumber());
+                if (lazy) {
+                    Assert.assertEquals(9, source.getLineNumber());
+                    Assert.assertEquals(14, props.getPropertyOptionsListSource(MY_STRING_OPTIONS).getLineNumber());
+                }
+                
+                // NOW OVERRIDE SOME OF IT, INCLUDING ONCE WITHIN THE SAME FILE,
+                // ONLY THE LATEST CONFLICT FOR EACH NAME IS KEPT
+                props.loadProperties(OVERRIDE_XML_RESOURCE_PATH);
+                conflicts = props.getPropertyConflicts();
+                Assert.assertEquals(3, conflicts.size());
+                PropertyConflict acrossFiles = conflicts.get(1);
+                Assert.assertEquals(MY_STRING, acrossFiles.getName());
+                Assert.assertTrue(acrossFiles.getOverriddenSource().getFileName().endsWith(VALID_XML_RESOURCE_PATH));
+                Assert.assertTrue(acrossFiles.getSource().getFileName().endsWith(OVERRIDE_XML_RESOURCE_PATH));
+                Assert.assertTrue(conflicts.get(2).isOptionsList());
+                Assert.assertEquals(MY_STRING_OPTIONS, conflicts.get(2).getName());
+                if (lazy) {
+                    Assert.assertEquals(9, acrossFiles.getSource().getLineNumber());
+                }
+                Assert.assertTrue(props.getPropertyConflictsReport().contains(MY_STRING_OPTIONS));
+                
+                // RELOADING FILES OVER AND OVER DOESN'T MAKE MORE CONFLICTS, AND
+                // RELOADING ONE THAT HASN'T CHANGED ISN'T A CONFLICT AT ALL
+                for (int i = 0; i < 10; i++) {
+                    props.loadProperties(VALID_XML_RESOURCE_PATH);
+                }
+                conflicts = props.getPropertyConflicts();
+                Assert.assertEquals(3, conflicts.size());
+                Assert.assertEquals(MY_STRING, conflicts.get(1).getName());
+                Assert.assertTrue(conflicts.get(1).getOverriddenSource().getFileName().endsWith(OVERRIDE_XML_RESOURCE_PATH));
+                Assert.assertTrue(conflicts.get(1).getSource().getFileName().endsWith(VALID_XML_RESOURCE_PATH));
+                
+                // PROPERTIES ADDED OR REMOVED BY CODE HAVE NO SOURCE
+                props.addProperty(MY_STRING, TEST_STRING);
+                props.removePropertyOptionsList(MY_STRING_OPTIONS);
+                Assert.assertNull(props.getPropertySource(MY_STRING));
+                Assert.assertNull(props.getPropertyOptionsListSource(MY_STRING_OPTIONS));
+                Assert.assertNotNull(props.getPropertySource(MY_STRING_2));
+                
+                // AND CLEARING FORGETS EVERYTHING
+                props.clear();
+                Assert.assertTrue(props.getPropertyConflicts().isEmpty());
+                Assert.assertNull(props.getPropertySource(MY_STRING_2));
+            }
+        }
+        catch (Exception ex) {
+            Assert.fail();
+        }
+        finally {
+            props.setLazyLoading(false);
+        }
+    }
+    
+    /**
+     * This JUnit test is for testing that references to other properties
+     * are filled in, and filled in again when what they refer to changes.
+     */
+    @Test
+    public void testInterpolation() {
+        PropertiesManager props = PropertiesManager.getPropertiesManager();
+        try {
+            props.setPropertiesDataPath(UNIT_TEST_PATH);
+            props.setInterpolating(true);
+            for (boolean lazy : new boolean[] {false, true}) {
+                props.clear();
+                props.setLazyLoading(lazy);
+                props.loadProperties(INTERPOLATION_XML_RESOURCE_PATH);
+                Assert.assertEquals("http://localhost:8080/api", props.getProperty(API_URL));
+                Assert.assertEquals("${NOT_A_PROPERTY}/api", props.getProperty(MISSING_URL));
+                Assert.assertEquals("${BASE_URL}/api", props.getRawProperty(API_URL));
+                if (lazy) {
+                    Assert.assertEquals(9, props.getPropertySource(BASE_URL).getLineNumber());
+                }
+                
+                // CHANGING WHAT'S REFERRED TO CHANGES WHAT REFERS TO IT
+                props.addProperty(PORT, "9090");
+                Assert.assertEquals("http://localhost:9090/api", props.getProperty(API_URL));
+                props.addProperty("NOT_A_PROPERTY", "found");
+                Assert.assertEquals("found/api", props.getProperty(MISSING_URL));
+                props.removeProperty(HOST);
+                Assert.assertEquals("http://${HOST}:9090/api", props.getProperty(API_URL));
+                
+                // AND SNAPSHOTS SEE THE FILLED IN VALUES
+                PropertiesSnapshot snapshot = props.getSnapshot();
+                props.addProperty(HOST, "example.com");
+                Assert.assertEquals("http://${HOST}:9090/api", snapshot.getProperty(API_URL));
+                Assert.assertEquals("http://example.com:9090/api", props.getProperty(API_URL));
+                snapshot.release();
+            }
+            
+            // CYCLES CAN'T BE FILLED IN, BUT CAN BE BROKEN
+            props.clear();
+            props.addProperty(MY_STRING, "${MY_STRING_2}!");
+            props.addProperty(MY_STRING_2, "${MY_STRING}?");
+            Assert.assertEquals("${MY_STRING_2}!", props.getProperty(MY_STRING));
+            Assert.assertEquals(2, props.getCyclicProperties().size());
+            props.addProperty(MY_STRING_2, TEST_STRING);
+            Assert.assertEquals(TEST_STRING + "!", props.getProperty(MY_STRING));
+            Assert.assertTrue(props.getCyclicProperties().isEmpty());
+            
+            // WITH INTERPOLATION OFF VALUES ARE TAKEN AS WRITTEN
+            props.setInterpolating(false);
+            props.addProperty(MY_STRING_2, "${MY_STRING}");
+            Assert.assertEquals("${MY_STRING}", props.getProperty(MY_STRING_2));
+            Assert.assertEquals("${MY_STRING}!", props.getProperty(MY_STRING));
+        }
+        catch (Exception ex) {
+            Assert.fail();
+        }
+        finally {
+            props.setInterpolating(false);
+            props.setLazyLoading(false);
+            props.clear();
+        }
+    }
+    
+    /**
+     * This JUnit test is for testing that properties with references are
+     * saved as they were written, so they are filled in again, and still
+     * follow what they refer to, once they're loaded back.
+     */
+    @Test
+    public void testSaveAndReloadInterpolatedProperties() {
+        PropertiesManager props = PropertiesManager.getPropertiesManager();
+        try {
+            Path tempDir = Files.createTempDirectory("pm_test");
+            props.setInterpolating(true);
+            for (boolean lazy : new boolean[] {false, true}) {
+                props.setPropertiesDataPath(UNIT_TEST_PATH);
+                props.clear();
+                props.setLazyLoading(lazy);
+                props.loadProperties(INTERPOLATION_XML_RESOURCE_PATH);
+                props.addProperty(MY_STRING, "${HOST} & ${MY_STRING_2}");
+                props.addProperty(MY_STRING_2, "${MY_STRING}");
+                
+                // SAVE IT BOTH WAYS
+                props.setPropertiesDataPath(tempDir.toString());
+                props.saveProperties(SAVED_XML_FILE);
+                ByteArrayOutputStream exported = new ByteArrayOutputStream();
+                props.exportBinaryProperties(Channels.newChannel(exported));
+                
+                for (boolean binary : new boolean[] {false, true}) {
+                    props.clear();
+                    if (binary) {
+                        props.importBinaryProperties(Channels.newChannel(new ByteArrayInputStream(exported.toByteArray())));
+                    }
+                    else {
+                        props.loadProperties(SAVED_XML_FILE);
+                    }
+                    Assert.assertEquals("http://localhost:8080/api", props.getProperty(API_URL));
+                    Assert.assertEquals("${BASE_URL}/api", props.getRawProperty(API_URL));
+                    Assert.assertEquals("http://${HOST}:${PORT}", props.getRawProperty(BASE_URL));
+                    Assert.assertEquals("${NOT_A_PROPERTY}/api", props.getProperty(MISSING_URL));
+                    Assert.assertEquals("${HOST} & ${MY_STRING_2}", props.getProperty(MY_STRING));
+                    Assert.assertEquals(2, props.getCyclicProperties().size());
+                    props.addProperty(HOST, "example.com");
+                    Assert.assertEquals("http://example.com:8080/api", props.getProperty(API_URL));
+                }
+            }
+            Files.delete(tempDir.resolve(SAVED_XML_FILE));
+            Files.delete(tempDir);
+        }
+        catch (Exception ex) {
+            Assert.fail();
+        }
+        finally {
+            props.setInterpolating(false);
+            props.setLazyLoading(false);
+            props.clear();
+        }
+    }
+    
+    /**
+     * This JUnit test is for testing that a batch of changes is applied
+     * all at once.
+     */
+    @Test
+    public void testApplyBatch() {
+        PropertiesManager props = PropertiesManager.getPropertiesManager();
+        try {
+            props.setPropertiesDataPath(UNIT_TEST_PATH);
+            props.clear();
+            props.loadProperties(VALID_XML_RESOURCE_PATH);
+            PropertiesSnapshot snapshot = props.getSnapshot();
+            long version = props.getVersion();
+            
+            PropertiesBatch batch = new PropertiesBatch(1000);
+            for (int i = 0; i < 1000; i++) {
+                batch.addProperty("BATCH_" + i, "" + i);
+            }
+            batch.addProperty(MY_STRING, TEST_STRING_2);
+            batch.removeProperty(MY_STRING_2);
+            batch.removeProperty("BATCH_999");
+            ArrayList<String> months = new ArrayList<>();
+            months.add(JANUARY);
+            batch.addPropertyOptionsList(MY_STRING_OPTIONS_2, months);
+            batch.removePropertyOptionsList(MY_STRING_OPTIONS);
+            Assert.assertEquals(1005, batch.size());
+            
+            // NOTHING CHANGES UNTIL THE BATCH IS APPLIED, THEN IT ALL DOES
+            Assert.assertEquals(TEST_STRING, props.getProperty(MY_STRING));
+            props.applyBatch(batch);
+            Assert.assertEquals(version + 1, props.getVersion());
+            Assert.assertEquals(999 + 1, props.getNumProperties());
+            Assert.assertEquals("998", props.getProperty("BATCH_998"));
+            Assert.assertFalse(props.hasProperty("BATCH_999"));
+            Assert.assertEquals(TEST_STRING_2, props.getProperty(MY_STRING));
+            Assert.assertFalse(props.hasProperty(MY_STRING_2));
+            Assert.assertNull(props.getPropertySource(MY_STRING));
+            Assert.assertEquals(1, props.getNumPropertyOptionsLists());
+            Assert.assertEquals(JANUARY, props.getPropertyOptionsView(MY_STRING_OPTIONS_2).get(0));
+            
+            // THE SNAPSHOT DOESN'T SEE ANY OF IT, EVEN AFTER MORE CHANGES
+            props.loadProperties(OVERRIDE_XML_RESOURCE_PATH);
+            Assert.assertEquals(2, snapshot.getNumProperties());
+            Assert.assertEquals(TEST_STRING, snapshot.getProperty(MY_STRING));
+            Assert.assertEquals(2, snapshot.getNumPropertyOptionsLists());
+            snapshot.release();
+            
+            // AND BATCHES ARE INTERPOLATED LIKE ANYTHING ELSE
+            props.setInterpolating(true);
+            batch.clear();
+            batch.addProperty(API_URL, "${HOST}/api");
+            batch.addProperty(HOST, "localhost");
+            props.applyBatch(batch);
+            Assert.assertEquals("localhost/api", props.getProperty(API_URL));
+            batch.clear();
+            batch.removeProperty(HOST);
+            props.applyBatch(batch);
+            Assert.assertEquals("${HOST}/api", props.getProperty(API_URL));
+        }
+        catch (Exception ex) {
+            Assert.fail();
+        }
+        finally {
+            props.setInterpolating(false);
+            props.clear();
+        }
+    }
+    
+    /**
+     * This JUnit test is for testing that locale bundles fall back to
+     * less specific locales and are only loaded once.
+     */
+    @Test
+    public void testBundles() {
+        PropertiesManager props = PropertiesManager.getPropertiesManager();
+        try {
+            props.setPropertiesDataPath(UNIT_TEST_PATH);
+            props.clear();
+            PropertiesBundle canadian = props.getBundle(STRINGS_BUNDLE, Locale.CANADA_FRENCH);
+            Assert.assertEquals(Locale.CANADA_FRENCH, canadian.getLocale());
+            Assert.assertEquals("Allo", canadian.getProperty(GREETING));
+            Assert.assertEquals("Au revoir", canadian.getProperty(FAREWELL));
+            Assert.assertEquals("Color", canadian.getProperty(COLOR));
+            Assert.assertEquals("f\u00e9vrier", canadian.getPropertyOptionsView(MONTHS).get(1));
+            Assert.assertEquals("hiver", canadian.getPropertyOptionsView(SEASONS).get(0));
+            Assert.assertEquals(3, canadian.getNumProperties());
+            
+            // LOCALES WITHOUT FILES GET WHAT THE LESS SPECIFIC ONES HAVE
+            PropertiesBundle french = props.getBundle(STRINGS_BUNDLE, Locale.FRANCE);
+            Assert.assertEquals("Bonjour", french.getProperty(GREETING));
+            Assert.assertNull(french.getPropertyOptionsView(SEASONS));
+            PropertiesBundle german = props.getBundle(STRINGS_BUNDLE, Locale.GERMAN);
+            Assert.assertEquals("Hello", german.getProperty(GREETING));
+            Assert.assertEquals(JANUARY, german.getPropertyOptionsList(MONTHS).get(0));
+            
+            // THEY'RE ONLY LOADED ONCE, AND KEPT APART FROM OTHER PROPERTIES
+            Assert.assertSame(canadian, props.getBundle(STRINGS_BUNDLE, Locale.CANADA_FRENCH));
+            Assert.assertFalse(props.hasProperty(GREETING));
+            
+            // AND THERE HAS TO BE AT LEAST ONE FILE
+            try {
+                props.getBundle("data/no_such_strings", Locale.FRENCH);
+                Assert.fail("Missing bundle should not have loaded");
+            }
+            catch (InvalidXMLFileFormatException ixffe) {
+                Assert.assertTrue(true);
+            }
+            
+            // CLEARING THE MANAGER THROWS THEM OUT
+            props.clear();
+            Assert.assertNotSame(canadian, props.getBundle(STRINGS_BUNDLE, Locale.CANADA_FRENCH));
+        }
+        catch (Exception ex) {
+            Assert.fail();
+        }
+        finally {
+            props.clear();
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package junit_test_beds;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * PropertiesDataGenerator.java
+ *
+ * This class writes synthetic properties files for testing at scale, either
+ * valid ones or ones with a particular mistake in them. Everything is made
+ * from the seed, so rather than keeping what was written, which wouldn't fit
+ * in memory for the biggest files, the expected name and value of any entry
+ * can be made again when it's time to check what was loaded. Every property
+ * is written on its own line, so getPropertyLineNumber says where it is.
+ *
+ * It can also be run to write a file, with the arguments
+ * file numProperties [seed].
+ *
+ * @author McKilla Gorilla
+ * @version 2.0
+ */
+public class PropertiesDataGenerator {
+    /**
+     * The characters values are made of. ASCII includes the characters
+     * XML needs escaped, LATIN adds accented letters, tabs and newlines,
+     * and MIXED adds carriage returns, Greek, CJK, and emoji, which need
+     * surrogate pairs.
+     */
+    public enum CharacterMix { ASCII, LATIN, MIXED };
+
+    /**
+     * The mistakes that can be put in a file. Except for TRUNCATED and
+     * MISSING_OPTIONS_LIST they're put in the middle property or the first
+     * options list, see getMalformedPropertyIndex.
+     */
+    public enum Malformation {
+        MISSING_NAME, MISSING_VALUE, EMPTY_OPTIONS, MISSING_OPTIONS_LIST,
+        UNCLOSED_ELEMENT, UNDEFINED_ENTITY, TRUNCATED
+    };
+
+    // THE NAMES OF EVERYTHING GENERATED START WITH THESE
+    public static final String PROPERTY_NAME_PREFIX = "PROP_";
+    public static final String OPTIONS_LIST_NAME_PREFIX = "OPTIONS_";
+
+    // THE LINE THE FIRST PROPERTY IS WRITTEN ON
+    public static final int FIRST_PROPERTY_LINE_NUMBER = 4;
+
+    // THE DEFAULTS, A SMALL BUT INTERESTING FILE
+    public static final int DEFAULT_NUM_PROPERTIES = 1000;
+    public static final int DEFAULT_VALUE_LENGTH = 16;
+    public static final int DEFAULT_NUM_OPTIONS_LISTS = 10;
+    public static final int DEFAULT_MAX_OPTIONS = 8;
+
+    // THE RANGES OF CODE POINTS EACH MIX PICKS FROM, AS PAIRS OF FIRST
+    // AND LAST, THE RANGES OF A MIX INCLUDE THOSE OF THE ONES BEFORE IT
+    private static final int[] ASCII_RANGES = {0x20, 0x7E};
+    private static final int[] LATIN_RANGES = {0x20, 0x7E, 0xC0, 0xFF, '\t', '\n'};
+    private static final int[] MIXED_RANGES = {0x20, 0x7E, 0xC0, 0xFF, '\t', '\n', '\r', '\r',
+                                               0x391, 0x3C9, 0x4E00, 0x9FFF, 0x1F600, 0x1F64F};
+
+    // SO THE RANDOM NUMBERS FOR EACH ENTRY ARE UNRELATED
+    private static final long SEED_SCRAMBLER = 0x9E3779B97F4A7C15L;
+
+    private final long seed;
+    private int numProperties = DEFAULT_NUM_PROPERTIES;
+    private int valueLength = DEFAULT_VALUE_LENGTH;
+    private int numOptionsLists = DEFAULT_NUM_OPTIONS_LISTS;
+    private int maxOptions = DEFAULT_MAX_OPTIONS;
+    private CharacterMix characterMix = CharacterMix.MIXED;
+
+    /**
+     * Constructor for a generator that makes everything from the seed,
+     * so two generators with the same seed and settings write the same
+     * file.
+     *
+     * @param initSeed The seed for all the random choices.
+     */
+    public PropertiesDataGenerator(long initSeed) {
+        seed = initSeed;
+    }
+
+    public int getNumProperties() {
+        return numProperties;
+    }
+
+    public void setNumProperties(int initNumProperties) {
+        numProperties = initNumProperties;
+    }
+
+    /**
+     * Mutator method for how long values are, in characters. Value lengths
+     * are random, from empty up to twice this long.
+     *
+     * @param initValueLength The average length of a value.
+     */
+    public void setValueLength(int initValueLength) {
+        valueLength = initValueLength;
+    }
+
+    public int getNumOptionsLists() {
+        return numOptionsLists;
+    }
+
+    /**
+     * Mutator method for how many options lists to write. Note that a
+     * valid file needs at least one.
+     *
+     * @param initNumOptionsLists The number of options lists.
+     */
+    public void setNumOptionsLists(int initNumOptionsLists) {
+        numOptionsLists = initNumOptionsLists;
+    }
+
+    /**
+     * Mutator method for how long options lists are. Each list has a
+     * random number of options, from 1 up to this many, and an option
+     * may be empty.
+     *
+     * @param initMaxOptions The most options a list can have.
+     */
+    public void setMaxOptions(int initMaxOptions) {
+        maxOptions = initMaxOptions;
+    }
+
+    public void setCharacterMix(CharacterMix initCharacterMix) {
+        characterMix = initCharacterMix;
+    }
+
+    public String getPropertyName(int index) {
+        return PROPERTY_NAME_PREFIX + index;
+    }
+
+    /**
+     * Accessor method for the value of a property, which is made again
+     * from the seed every time it's asked for.
+     *
+     * @param index Which property.
+     *
+     * @return The value written for the property.
+     */
+    public String getPropertyValue(int index) {
+        Random random = new Random(seed + index * SEED_SCRAMBLER);
+        return makeText(random, random.nextInt(2 * valueLength + 1));
+    }
+
+    public String getOptionsListName(int index) {
+        return OPTIONS_LIST_NAME_PREFIX + index;
+    }
+
+    /**
+     * Accessor method for the options of an options list, which are made
+     * again from the seed every time they're asked for.
+     *
+     * @param index Which options list.
+     *
+     * @return The options written for the list.
+     */
+    public ArrayList<String> getOptions(int index) {
+        Random random = new Random(~(seed + index * SEED_SCRAMBLER));
+        int numOptions = 1 + random.nextInt(maxOptions);
+        ArrayList<String> options = new ArrayList<>(numOptions);
+        for (int i = 0; i < numOptions; i++) {
+            options.add(makeText(random, random.nextInt(valueLength + 1)));
+        }
+        return options;
+    }
+
+    public int getPropertyLineNumber(int index) {
+        return FIRST_PROPERTY_LINE_NUMBER + index;
+    }
+
+    public int getMalformedPropertyIndex() {
+        return numProperties / 2;
+    }
+
+    /**
+     * This method writes a valid properties file.
+     *
+     * @param file Where to write it.
+     *
+     * @throws IOException Thrown if the file can't be written.
+     */
+    public void write(Path file) throws IOException {
+        write(file, null);
+    }
+
+    /**
+     * This method writes a properties file with the malformation in it.
+     *
+     * @param file Where to write it.
+     *
+     * @param malformation The mistake to make, or null for a valid file.
+     *
+     * @throws IOException Thrown if the file can't be written.
+     */
+    public void write(Path file, Malformation malformation) throws IOException {
+        int malformedIndex = getMalformedPropertyIndex();
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<properties>\n");
+            writer.write("    <property_list>\n");
+            for (int i = 0; i < numProperties; i++) {
+                if ((malformation == Malformation.TRUNCATED) && (i == malformedIndex)) {
+                    return;
+                }
+                boolean malformed = i == malformedIndex;
+                writer.write("        <property");
+                if (!(malformed && (malformation == Malformation.MISSING_NAME))) {
+                    writer.write(" name=\"");
+                    writer.write(getPropertyName(i));
+                    writer.write('"');
+                }
+                if (!(malformed && (malformation == Malformation.MISSING_VALUE))) {
+                    writer.write(" value=\"");
+                    writeEscaped(writer, getPropertyValue(i));
+                    if (malformed && (malformation == Malformation.UNDEFINED_ENTITY)) {
+                        writer.write("&undefined;");
+                    }
+                    writer.write('"');
+                }
+                writer.write((malformed && (malformation == Malformation.UNCLOSED_ELEMENT)) ? ">\n" : "/>\n");
+            }
+            writer.write("    </property_list>\n");
+            if (malformation != Malformation.MISSING_OPTIONS_LIST) {
+                writer.write("    <property_options_list>\n");
+                for (int i = 0; i < numOptionsLists; i++) {
+                    writer.write("        <property_options name=\"");
+                    writer.write(getOptionsListName(i));
+                    writer.write("\">\n");
+                    if (!((i == 0) && (malformation == Malformation.EMPTY_OPTIONS))) {
+                        for (String option : getOptions(i)) {
+                            writer.write("            <option>");
+                            writeEscaped(writer, option);
+                            writer.write("</option>\n");
+                        }
+                    }
+                    writer.write("        </property_options>\n");
+                }
+                writer.write("    </property_options_list>\n");
+            }
+            writer.write("</properties>\n");
+        }
+    }
+
+    // MAKES length CODE POINTS OF TEXT FROM THE CHARACTER MIX
+    private String makeText(Random random, int length) {
+        int[] ranges = characterMix == CharacterMix.ASCII ? ASCII_RANGES
+                : characterMix == CharacterMix.LATIN ? LATIN_RANGES : MIXED_RANGES;
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            // MOSTLY ASCII, LIKE REAL PROPERTIES
+            int range = random.nextInt(4) == 0 ? random.nextInt(ranges.length / 2) * 2 : 0;
+            text.appendCodePoint(ranges[range] + random.nextInt(ranges[range + 1] - ranges[range] + 1));
+        }
+        return text.toString();
+    }
+
+    // WRITES THE TEXT SO THAT IT WILL BE READ BACK EXACTLY, IN AN
+    // ATTRIBUTE OR BETWEEN TAGS
+    private static void writeEscaped(BufferedWriter writer, String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':   writer.write("&amp;");  break;
+                case '<':   writer.write("&lt;");   break;
+                case '>':   writer.write("&gt;");   break;
+                case '"':   writer.write("&quot;"); break;
+                case '\t':  writer.write("&#9;");   break;
+                case '\n':  writer.write("&#10;");  break;
+                case '\r':  writer.write("&#13;");  break;
+                default:    writer.write(c);
+            }
+        }
+    }
+
+    /**
+     * This writes a valid file, see the class description for arguments.
+     *
+     * @param args The file, how many properties, and optionally the seed.
+     *
+     * @throws IOException Thrown if the file can't be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: PropertiesDataGenerator file numProperties [seed]");
+            return;
+        }
+        PropertiesDataGenerator generator = new PropertiesDataGenerator(args.length > 2 ? Long.parseLong(args[2]) : 0);
+        generator.setNumProperties(Integer.parseInt(args[1]));
+        generator.write(Paths.get(args[0]));
+    }
+}
@@ -1,10 +1,17 @@
 package junit_test_beds;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import org.junit.Assert;
 import org.junit.Test;
+import javax.xml.validation.Schema;
 import org.w3c.dom.Document;
 import properties_manager.InvalidXMLFileFormatException;
 import static properties_manager.PropertiesManager.PROPERTIES_SCHEMA_FILE_NAME;
+import properties_manager.ValidationError;
+import properties_manager.ValidationResult;
 import properties_manager.XMLUtilities;
 
 /**
@@ -26,6 +33,9 @@ public class XMLU_Unit_Tests {
         "data/invalid_test_properties_2.xml",
         "data/invalid_test_properties_3.xml"};
     
+    // AN XML FILE WITH SEVERAL ERRORS IN IT
+    public static final String MULTIPLE_ERRORS_XML_RESOURCE_PATH = "data/invalid_test_properties_4.xml";
+    
     /**
      * This test method tests the XMLUtilities' validateXMLDoc method
      * using a properly formatted (i.e. valid) XML file.
@@ -118,4 +128,123 @@ public class XMLU_Unit_Tests {
             Assert.assertTrue(true);
         }
     }
+    
+    /**
+     * This test method tests that XMLUtilities compiles a schema only once
+     * and can use explicitly named JAXP implementations.
+     */
+    @Test
+    public void testSchemaCachingAndImplementations() {
+        try {
+            XMLUtilities xmlUtil = new XMLUtilities();
+            String testXMLPath = getClass().getResource(VALID_XML_RESOURCE_PATH).getPath();
+            String defaultSchemaPath = xmlUtil.getClass().getResource(PROPERTIES_SCHEMA_FILE_NAME).getPath();
+            
+            // THE SAME COMPILED SCHEMA SHOULD BE HANDED BACK EVERY TIME
+            Schema schema = xmlUtil.getSchema(defaultSchemaPath);
+            Assert.assertSame(schema, xmlUtil.getSchema(defaultSchemaPath));
+            
+            // NAMING THE IMPLEMENTATIONS STARTS THE CACHE OVER
+            xmlUtil.setImplementations(XMLUtilities.JDK_DOCUMENT_BUILDER_FACTORY, XMLUtilities.JDK_SCHEMA_FACTORY);
+            Assert.assertNotSame(schema, xmlUtil.getSchema(defaultSchemaPath));
+            Assert.assertTrue(xmlUtil.validateXMLDoc(testXMLPath, defaultSchemaPath));
+            Document doc = xmlUtil.loadXMLDocument(testXMLPath, defaultSchemaPath);
+            Assert.assertNotNull(doc);
+            
+            // AND A BAD FILE SHOULD STILL BE CAUGHT
+            String invalidXMLPath = getClass().getResource(INVALID_XML_RESOURCE_PATHS[0]).getPath();
+            Assert.assertFalse(xmlUtil.validateXMLDoc(invalidXMLPath, defaultSchemaPath));
+        }
+        catch(Exception e) {
+            Assert.fail();
+        }
+    }
+
+    /**
+     * This test method tests the XMLUtilities' validate method, which
+     * says where each error is, and can find all of them in one pass.
+     */
+    @Test
+    public void testValidationResult() {
+        XMLUtilities xmlUtil = new XMLUtilities();
+        String defaultSchemaPath = xmlUtil.getClass().getResource(PROPERTIES_SCHEMA_FILE_NAME).getPath();
+        
+        // A VALID FILE HAS NO ERRORS
+        String testXMLPath = getClass().getResource(VALID_XML_RESOURCE_PATH).getPath();
+        ValidationResult result = xmlUtil.validate(testXMLPath, defaultSchemaPath, true);
+        Assert.assertTrue(result.isValid());
+        Assert.assertTrue(result.getErrors().isEmpty());
+        Assert.assertNull(result.getFirstError());
+        
+        // THE PROPERTY WITH NO NAME IS ON LINE 9
+        testXMLPath = getClass().getResource(INVALID_XML_RESOURCE_PATHS[0]).getPath();
+        result = xmlUtil.validate(testXMLPath, defaultSchemaPath, false);
+        Assert.assertFalse(result.isValid());
+        Assert.assertEquals(1, result.getErrors().size());
+        ValidationError error = result.getFirstError();
+        Assert.assertEquals(ValidationError.Severity.ERROR, error.getSeverity());
+        Assert.assertEquals(9, error.getLineNumber());
+        Assert.assertTrue(error.getColumnNumber() > 0);
+        Assert.assertTrue(error.getMessage().contains("name"));
+        
+        // BY DEFAULT WE STOP AT THE FIRST OF SEVERAL ERRORS
+        testXMLPath = getClass().getResource(MULTIPLE_ERRORS_XML_RESOURCE_PATH).getPath();
+        result = xmlUtil.validate(testXMLPath, defaultSchemaPath, false);
+        Assert.assertEquals(1, result.getErrors().size());
+        Assert.assertEquals(8, result.getFirstError().getLineNumber());
+        
+        // BUT WE CAN FIND THEM ALL
+        result = xmlUtil.validate(testXMLPath, defaultSchemaPath, true);
+        Assert.assertFalse(result.isValid());
+        Assert.assertEquals(3, result.getErrors().size());
+        Assert.assertEquals(8, result.getErrors().get(0).getLineNumber());
+        Assert.assertEquals(9, result.getErrors().get(1).getLineNumber());
+        Assert.assertEquals(14, result.getErrors().get(2).getLineNumber());
+        
+        // A FILE THAT ISN'T THERE IS A FATAL ERROR
+        result = xmlUtil.validate(testXMLPath + ".missing", defaultSchemaPath, true);
+        Assert.assertFalse(result.isValid());
+        Assert.assertEquals(ValidationError.Severity.FATAL_ERROR, result.getFirstError().getSeverity());
+        
+        // AND THE EXCEPTION FOR AN INVALID FILE SAYS WHAT WAS WRONG
+        try {
+            xmlUtil.loadXMLDocument(testXMLPath, defaultSchemaPath);
+            Assert.fail("Invalid XML file should not have loaded");
+        }
+        catch(InvalidXMLFileFormatException ixffe) {
+            Assert.assertNotNull(ixffe.getValidationResult());
+            Assert.assertEquals(8, ixffe.getValidationResult().getFirstError().getLineNumber());
+            Assert.assertTrue(ixffe.toString().contains("line 8"));
+        }
+    }
+    
+    /**
+     * This test method makes sure an exception carrying a validation
+     * result can be serialized and read back with the result intact.
+     */
+    @Test
+    public void testSerializingValidationResult() {
+        XMLUtilities xmlUtil = new XMLUtilities();
+        String defaultSchemaPath = xmlUtil.getClass().getResource(PROPERTIES_SCHEMA_FILE_NAME).getPath();
+        String testXMLPath = getClass().getResource(MULTIPLE_ERRORS_XML_RESOURCE_PATH).getPath();
+        try {
+            InvalidXMLFileFormatException original =
+                    new InvalidXMLFileFormatException(xmlUtil.validate(testXMLPath, defaultSchemaPath, true));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(original);
+            }
+            InvalidXMLFileFormatException copy;
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                copy = (InvalidXMLFileFormatException)in.readObject();
+            }
+            Assert.assertEquals(original.toString(), copy.toString());
+            Assert.assertEquals(3, copy.getValidationResult().getErrors().size());
+            Assert.assertEquals(14, copy.getValidationResult().getErrors().get(2).getLineNumber());
+            Assert.assertFalse(copy.getValidationResult().isValid());
+        }
+        catch (Exception ex) {
+            Assert.fail(ex.toString());
+        }
+    }
 }